@@ -0,0 +1,496 @@
+package Java.Challenges;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import Java.Java8.Streams.MappedLineSpliterator;
+
+import static java.util.stream.Collectors.groupingByConcurrent;
+
+/**
+ * An index of anagram groups, built in parallel, with a signature per word
+ * computed without allocating.
+ *
+ * Anagrams groups the words by alphabetize(word), which lowercases, copies and
+ * sorts the letters of every word into a new String key. Here instead:
+ *
+ * 1) the signature of a word is the count of each of its 26 letters, case
+ *    insensitive, 4 bits per letter packed into two longs: a to m, n to z.
+ *    Two words are anagrams if and only if their signatures are equal
+ * 2) the signature picks one of the shards, each an open-addressing table
+ *    behind a lock of its own, so threads adding words lock one shard at a
+ *    time, and rarely the same one
+ * 3) the words are stored as bytes in the pool of their shard, a group being
+ *    a chain of word indexes, and a hash set of the words finds a word
+ *    already added, which isn't added again, as with the TreeSet of
+ *    Anagrams.main(): 24 to 40 bytes per word on top of its letters, instead
+ *    of a String, a TreeSet entry and a List or TreeSet per group
+ *
+ * Words with a character other than A-Z and a-z, or with a letter more than
+ * 15 times, don't fit a signature: they're grouped by alphabetize() in a
+ * ConcurrentHashMap, as Anagrams does, and can only be anagrams of each other.
+ *
+ * AnagramIndex index = AnagramIndex.of(Paths.get("dictionary.txt"));
+ * List<String> anagrams = index.lookup("staple"); // [petals, pleats, staple]
+ */
+public class AnagramIndex {
+
+    /** Set on the first long of the signature in a slot, 0 is an empty slot */
+    private static final long OCCUPIED = 1L << 63;
+    /** Largest array the JVM allocates */
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    /**
+     * An open-addressing table of signatures, each with the chain of the words
+     * of its group
+     */
+    private static final class Shard {
+        private long[] keys = new long[2 * 64]; // per slot: n-z counts | OCCUPIED, a-m counts
+        private int[] heads = new int[64];      // per slot: the last word of the group
+        private int[] sizes = new int[64];      // per slot: the number of words of the group
+        private int groups;
+        private byte[] pool = new byte[1 << 10];
+        private int[] ends = new int[64];       // per word: its end in the pool, it starts at the end of the previous one
+        private int[] previous = new int[64];   // per word: the previous word of its group, -1 for the first
+        private int words;
+        // the words as a hash set, to find a word already added without walking
+        // its group: per slot the hash of the word << 32 | its index + 1
+        private long[] wordSlots = new long[128];
+
+        private int find(long high, long low, int hash) {
+            int mask = heads.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long key = keys[2 * slot];
+                if (key == 0 || (key == high && keys[2 * slot + 1] == low)) {
+                    return slot;
+                }
+            }
+        }
+
+        private int start(int word) {
+            return word == 0 ? 0 : ends[word - 1];
+        }
+
+        /**
+         * @return the slot of the word in wordSlots, empty if it isn't there
+         */
+        private int findWord(CharSequence chars, int from, int to, int wordHash) {
+            int mask = wordSlots.length - 1;
+            for (int slot = wordHash & mask; ; slot = (slot + 1) & mask) {
+                long entry = wordSlots[slot];
+                if (entry == 0) {
+                    return slot;
+                }
+                if ((int) (entry >>> 32) == wordHash) {
+                    int word = (int) entry - 1;
+                    int start = start(word);
+                    if (ends[word] - start == to - from && equalChars(start, chars, from, to)) {
+                        return slot;
+                    }
+                }
+            }
+        }
+
+        private boolean equalChars(int start, CharSequence chars, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (pool[start++] != chars.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized boolean add(long high, long low, int hash, CharSequence chars, int from, int to,
+                                 int wordHash) {
+            int wordSlot = findWord(chars, from, to, wordHash);
+            if (wordSlots[wordSlot] != 0) {
+                return false;
+            }
+            int slot = find(high, low, hash);
+            if (keys[2 * slot] == 0) {
+                keys[2 * slot] = high;
+                keys[2 * slot + 1] = low;
+                heads[slot] = -1;
+                groups++;
+            }
+            int start = start(words);
+            int end = start + (to - from);
+            if (end < 0 || end > MAX_ARRAY) {
+                throw new IllegalStateException("Shard full, use more shards");
+            }
+            if (end > pool.length) {
+                pool = Arrays.copyOf(pool, (int) Math.min(MAX_ARRAY, Math.max(2L * pool.length, end)));
+            }
+            if (words == ends.length) {
+                ends = Arrays.copyOf(ends, ends.length << 1);
+                previous = Arrays.copyOf(previous, previous.length << 1);
+            }
+            for (int i = from; i < to; i++) {
+                pool[start + i - from] = (byte) chars.charAt(i); // A-Z and a-z only
+            }
+            ends[words] = end;
+            previous[words] = heads[slot];
+            heads[slot] = words++;
+            sizes[slot]++;
+            wordSlots[wordSlot] = (long) wordHash << 32 | words;
+            if (groups > heads.length >>> 1) { // at most half full
+                grow();
+            }
+            if (words > wordSlots.length >>> 1) {
+                growWords();
+            }
+            return true;
+        }
+
+        private void growWords() {
+            long[] old = wordSlots;
+            wordSlots = new long[old.length << 1];
+            int mask = wordSlots.length - 1;
+            for (long entry : old) {
+                if (entry != 0) {
+                    int slot = (int) (entry >>> 32) & mask;
+                    while (wordSlots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    wordSlots[slot] = entry;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            int[] oldSizes = sizes;
+            keys = new long[oldKeys.length << 1];
+            heads = new int[oldHeads.length << 1];
+            sizes = new int[oldSizes.length << 1];
+            for (int i = 0; i < oldHeads.length; i++) {
+                long high = oldKeys[2 * i];
+                if (high != 0) {
+                    long low = oldKeys[2 * i + 1];
+                    int slot = find(high, low, (int) hash(high & ~OCCUPIED, low));
+                    keys[2 * slot] = high;
+                    keys[2 * slot + 1] = low;
+                    heads[slot] = oldHeads[i];
+                    sizes[slot] = oldSizes[i];
+                }
+            }
+        }
+
+        /**
+         * @return the words of a group, in the order they were added
+         */
+        private List<String> group(int slot) {
+            String[] group = new String[sizes[slot]];
+            int i = group.length;
+            for (int word = heads[slot]; word >= 0; word = previous[word]) {
+                int start = start(word);
+                group[--i] = new String(pool, start, ends[word] - start, StandardCharsets.ISO_8859_1);
+            }
+            return new ArrayList<>(Arrays.asList(group));
+        }
+
+        synchronized List<String> lookup(long high, long low, int hash) {
+            int slot = find(high, low, hash);
+            return keys[2 * slot] == 0 ? new ArrayList<>() : group(slot);
+        }
+
+        synchronized List<List<String>> groups(int minGroupSize) {
+            List<List<String>> groups = new ArrayList<>();
+            for (int slot = 0; slot < heads.length; slot++) {
+                if (keys[2 * slot] != 0 && sizes[slot] >= minGroupSize) {
+                    groups.add(group(slot));
+                }
+            }
+            return groups;
+        }
+
+        synchronized int words() {
+            return words;
+        }
+
+        synchronized int groupCount() {
+            return groups;
+        }
+    }
+
+    private final Shard[] shards;
+    private final Map<String, Set<String>> others = new ConcurrentHashMap<>();
+
+    /**
+     * An index with 16 shards per core, at least 64
+     */
+    public AnagramIndex() {
+        this(Math.max(64, Integer.highestOneBit(16 * Runtime.getRuntime().availableProcessors() - 1) << 1));
+    }
+
+    /**
+     * @param shards the number of shards, a power of two: each one holds at
+     *               most 2 GB of letters
+     */
+    public AnagramIndex(int shards) {
+        if (shards <= 0 || Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException("Number of shards not a power of two: " + shards);
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Indexes the words of a dictionary, reading its memory-mapped lines in
+     * parallel
+     * @param dictionary a UTF-8 file of words separated by whitespace
+     */
+    public static AnagramIndex of(Path dictionary) {
+        AnagramIndex index = new AnagramIndex();
+        MappedLineSpliterator.lines(dictionary).parallel().forEach(index::addWords);
+        return index;
+    }
+
+    /**
+     * Adds words, in parallel if the stream is
+     * @return this index
+     */
+    public AnagramIndex addAll(Stream<? extends CharSequence> words) {
+        words.forEach(this::add);
+        return this;
+    }
+
+    /**
+     * Adds the words of a line, separated by whitespace as a Scanner does
+     */
+    public void addWords(CharSequence line) {
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            int from = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            add(line, from, i);
+        }
+    }
+
+    /**
+     * Adds a word, safe to call from any number of threads
+     * @return false if the word was already in the index, or is empty
+     */
+    public boolean add(CharSequence word) {
+        return add(word, 0, word.length());
+    }
+
+    private boolean add(CharSequence chars, int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        long low = counts(chars, from, to, 0);
+        long high = low < 0 ? -1 : counts(chars, from, to, 13);
+        if (high < 0) {
+            String word = chars.subSequence(from, to).toString();
+            return others.computeIfAbsent(Anagrams.alphabetize(word), key -> ConcurrentHashMap.newKeySet()).add(word);
+        }
+        long hash = hash(high, low);
+        return shard(hash).add(high | OCCUPIED, low, (int) hash, chars, from, to, wordHash(chars, from, to));
+    }
+
+    /**
+     * @return the words of the index that are anagrams of the word, itself
+     *         included if it was added, in the order they were added
+     */
+    public List<String> lookup(CharSequence word) {
+        long low = counts(word, 0, word.length(), 0);
+        long high = low < 0 ? -1 : counts(word, 0, word.length(), 13);
+        if (high < 0) {
+            Set<String> group = others.get(Anagrams.alphabetize(word.toString()));
+            return group == null ? new ArrayList<>() : new ArrayList<>(group);
+        }
+        long hash = hash(high, low);
+        return shard(hash).lookup(high | OCCUPIED, low, (int) hash);
+    }
+
+    /**
+     * Passes every group of at least minGroupSize words to the action. The
+     * groups of a shard are copied under its lock, then passed to the action
+     * once it's released, so the action can add words
+     */
+    public void forEachGroup(int minGroupSize, Consumer<List<String>> action) {
+        for (Shard shard : shards) {
+            shard.groups(minGroupSize).forEach(action);
+        }
+        for (Set<String> group : others.values()) {
+            if (group.size() >= minGroupSize) {
+                action.accept(new ArrayList<>(group));
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct words
+     */
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            size += shard.words();
+        }
+        for (Set<String> group : others.values()) {
+            size += group.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of anagram groups, a word without anagrams being a
+     *         group of its own
+     */
+    public long groupCount() {
+        long groups = others.size();
+        for (Shard shard : shards) {
+            groups += shard.groupCount();
+        }
+        return groups;
+    }
+
+    /**
+     * Computes the signature of a word, as the index does
+     * @param signature receives the n-z counts, then the a-m counts
+     * @return false if the word doesn't fit a signature
+     */
+    static boolean signature(CharSequence word, long[] signature) {
+        long low = counts(word, 0, word.length(), 0);
+        long high = low < 0 ? -1 : counts(word, 0, word.length(), 13);
+        if (high < 0 || word.length() == 0) {
+            return false;
+        }
+        signature[0] = high;
+        signature[1] = low;
+        return true;
+    }
+
+    private Shard shard(long hash) {
+        return shards[(int) (hash >>> 32) & (shards.length - 1)];
+    }
+
+    /**
+     * @return the counts of the 13 letters from first, 4 bits each, or -1 if
+     *         the chars hold something else than A-Z and a-z, or one of the
+     *         13 letters more than 15 times
+     */
+    private static long counts(CharSequence chars, int from, int to, int first) {
+        long counts = 0;
+        for (int i = from; i < to; i++) {
+            int letter = (chars.charAt(i) | 0x20) - 'a'; // 'A' to 'a', only ASCII letters in [0, 26)
+            if (letter < 0 || letter >= 26) {
+                return -1;
+            }
+            letter -= first;
+            if (letter >= 0 && letter < 13) {
+                counts += 1L << (4 * letter);
+                if ((counts >>> (4 * letter) & 0xf) == 0) { // the 16th one
+                    return -1;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the FNV-1a hash of the chars, case sensitive
+     */
+    private static int wordHash(CharSequence chars, int from, int to) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ chars.charAt(i)) * 0x01000193;
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * Mixes the two longs of a signature with the finalization step of
+     * MurmurHash3: the high 32 bits pick the shard, the low ones the slot
+     */
+    private static long hash(long high, long low) {
+        long hash = high * 0x9e3779b97f4a7c15L + low;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @param args the number of words of the benchmark, 10 million by default
+     */
+    public static void main(String[] args) throws IOException {
+        AnagramIndex index = new AnagramIndex();
+        index.addAll(Stream.of("staple", "petals", "Pleats", "cat", "act", "tac", "cat", "naïve", "evian"));
+        System.out.println("======== Anagrams of a few words ========");
+        System.out.println("staple: " + index.lookup("staple") + ", tca: " + index.lookup("tca")
+            + ", dog: " + index.lookup("dog") + ", vaïne: " + index.lookup("vaïne"));
+        index.forEachGroup(2, group -> System.out.println(group.size() + ": " + group));
+        System.out.println(index.size() + " words, " + index.groupCount() + " groups");
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path file = Files.createTempFile("dictionary", ".txt");
+        try {
+            // words of 3 to 9 letters among 10, many of them anagrams
+            Random random = new Random(42);
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < n; word++) {
+                for (int letter = 3 + random.nextInt(7); letter > 0; letter--) {
+                    text.append((char) ('a' + random.nextInt(10)));
+                }
+                text.append('\n');
+                if (text.length() > 1 << 20) {
+                    Files.writeString(file, text, StandardOpenOption.APPEND);
+                    text.setLength(0);
+                }
+            }
+            Files.writeString(file, text, StandardOpenOption.APPEND);
+            System.out.println("\n======== [Benchmark]: anagram groups of " + n + " words ========");
+            for (int run = 0; run < 3; run++) {
+                System.gc();
+                long start = System.nanoTime();
+                long alphabetized = MappedLineSpliterator.lines(file).parallel()
+                    .map(CharSequence::toString)
+                    .collect(groupingByConcurrent(word -> Anagrams.alphabetize(word)))
+                    .size();
+                long alphabetizedTime = System.nanoTime() - start;
+
+                System.gc();
+                start = System.nanoTime();
+                AnagramIndex indexed = AnagramIndex.of(file);
+                long indexedTime = System.nanoTime() - start;
+
+                if (run == 2) {
+                    System.out.println("same groups: " + (alphabetized == indexed.groupCount()));
+                    System.out.printf("groupingByConcurrent(alphabetize): %d msecs, AnagramIndex: %d msecs, "
+                        + "%d distinct words%n", alphabetizedTime / 1_000_000, indexedTime / 1_000_000,
+                        indexed.size());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        System.out.println(AnagramIndex.of(Paths.get("Java", "Java8", "Streams", "Ozymandias.txt"))
+            .groupCount() + " anagram groups in Ozymandias.txt");
+    }
+}
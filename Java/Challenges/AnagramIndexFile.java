@@ -0,0 +1,345 @@
+package Java.Challenges;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An AnagramIndex saved to a file, answering lookups from the memory-mapped
+ * file without reading the dictionary again.
+ *
+ * Anagrams.main() rebuilds its Map from the dictionary on every run, which
+ * takes seconds for a large dictionary. write() saves the groups of an
+ * AnagramIndex once, and open() maps the file in milliseconds, whatever its
+ * size: the pages a lookup reads are loaded by the OS on demand.
+ *
+ * ------------------------------ File format --------------------------------
+ * 1) header     - MAGIC, VERSION, the number of groups and of words, the size
+ *                 of the pool
+ * 2) signatures - two longs per group, sorted: the signature of AnagramIndex,
+ *                 or for the words that don't fit one, a hash of their
+ *                 alphabetize()d form with the sign bit set
+ * 3) groups     - per group the index of its first word, plus the number of
+ *                 words: group i holds words [groups[i], groups[i + 1])
+ * 4) words      - per word the offset of its end in the pool, plus a leading
+ *                 0: word i is bytes [words[i], words[i + 1])
+ * 5) pool       - the UTF-8 bytes of all the words, group after group
+ *
+ * A lookup computes the signature of the word, binary searches it among the
+ * signatures, and decodes the words of its group: O(log groups) reads of the
+ * mapped file. Each section is mapped on its own, so the pool can take up to
+ * 2 GB, and the signatures 134 million groups.
+ *
+ * AnagramIndexFile.write(AnagramIndex.of(dictionary), indexPath);
+ * List<String> anagrams = AnagramIndexFile.open(indexPath).lookup("staple");
+ */
+public class AnagramIndexFile {
+
+    static final int MAGIC = 0x414e4147; // "ANAG"
+    static final int VERSION = 1;
+    private static final int HEADER = 24;
+
+    private final LongBuffer signatures;
+    private final IntBuffer groups;
+    private final IntBuffer words;
+    private final ByteBuffer pool;
+    private final int groupCount;
+
+    private AnagramIndexFile(LongBuffer signatures, IntBuffer groups, IntBuffer words, ByteBuffer pool) {
+        this.signatures = signatures;
+        this.groups = groups;
+        this.words = words;
+        this.pool = pool;
+        this.groupCount = groups.limit() - 1;
+    }
+
+    /**
+     * A group while writing: its signature, and a word to look it up by
+     */
+    private static final class Group {
+        private final long high;
+        private final long low;
+        private final String word;
+        private final int size;
+
+        Group(long high, long low, String word, int size) {
+            this.high = high;
+            this.low = low;
+            this.word = word;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Computes the key of a word in the signatures section
+     * @param key receives the two longs
+     */
+    private static void key(CharSequence word, long[] key) {
+        if (!AnagramIndex.signature(word, key)) {
+            String alphabetized = Anagrams.alphabetize(word.toString());
+            long hash = 0xcbf29ce484222325L; // FNV-1a
+            for (int i = 0; i < alphabetized.length(); i++) {
+                hash = (hash ^ alphabetized.charAt(i)) * 0x100000001b3L;
+            }
+            key[0] = hash | Long.MIN_VALUE;
+            key[1] = alphabetized.hashCode();
+        }
+    }
+
+    /**
+     * Writes the groups of an index to a file. The index mustn't change while
+     * it's written
+     * @param index the index to save
+     * @param file  the file to create or overwrite
+     */
+    public static void write(AnagramIndex index, Path file) throws IOException {
+        List<Group> sorted = new ArrayList<>();
+        long[] key = new long[2];
+        long[] wordCount = new long[1];
+        long[] poolSize = new long[1];
+        index.forEachGroup(1, group -> {
+            key(group.get(0), key);
+            sorted.add(new Group(key[0], key[1], group.get(0), group.size()));
+            wordCount[0] += group.size();
+            for (String word : group) {
+                poolSize[0] += word.getBytes(StandardCharsets.UTF_8).length;
+            }
+        });
+        if (sorted.size() > (Integer.MAX_VALUE >> 4) || wordCount[0] >= Integer.MAX_VALUE >> 2
+            || poolSize[0] > Integer.MAX_VALUE) {
+            throw new IOException("Index too large for a file: " + sorted.size() + " groups, "
+                + wordCount[0] + " words, " + poolSize[0] + " bytes");
+        }
+        sorted.sort(Comparator.<Group>comparingLong(group -> group.high).thenComparingLong(group -> group.low));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt((int) wordCount[0]);
+            out.writeLong(poolSize[0]);
+            for (Group group : sorted) {
+                out.writeLong(group.high);
+                out.writeLong(group.low);
+            }
+            int first = 0;
+            for (Group group : sorted) {
+                out.writeInt(first);
+                first += group.size;
+            }
+            out.writeInt(first);
+            // the words of a group are looked up twice, for their ends, then
+            // for their bytes, rather than kept all in memory
+            int end = 0;
+            out.writeInt(end);
+            for (Group group : sorted) {
+                for (String word : index.lookup(group.word)) {
+                    end += word.getBytes(StandardCharsets.UTF_8).length;
+                    out.writeInt(end);
+                }
+            }
+            for (Group group : sorted) {
+                for (String word : index.lookup(group.word)) {
+                    out.write(word.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps an index file written by write()
+     */
+    public static AnagramIndexFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            if (channel.read(header, 0) != HEADER || header.getInt(0) != MAGIC) {
+                throw new IOException("Not an anagram index: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported anagram index version " + header.getInt(4) + ": " + file);
+            }
+            int groupCount = header.getInt(8);
+            int wordCount = header.getInt(12);
+            long poolSize = header.getLong(16);
+            long signaturesAt = HEADER;
+            long groupsAt = signaturesAt + 16L * groupCount;
+            long wordsAt = groupsAt + 4L * (groupCount + 1);
+            long poolAt = wordsAt + 4L * (wordCount + 1);
+            if (groupCount < 0 || wordCount < 0 || poolSize < 0 || poolSize > Integer.MAX_VALUE
+                || poolAt + poolSize != channel.size()) {
+                throw new IOException("Corrupt anagram index: " + file);
+            }
+            // the mappings stay valid once the channel is closed
+            return new AnagramIndexFile(
+                channel.map(FileChannel.MapMode.READ_ONLY, signaturesAt, groupsAt - signaturesAt).asLongBuffer(),
+                channel.map(FileChannel.MapMode.READ_ONLY, groupsAt, wordsAt - groupsAt).asIntBuffer(),
+                channel.map(FileChannel.MapMode.READ_ONLY, wordsAt, poolAt - wordsAt).asIntBuffer(),
+                channel.map(FileChannel.MapMode.READ_ONLY, poolAt, poolSize));
+        }
+    }
+
+    /**
+     * @return the words of the index that are anagrams of the word, itself
+     *         included if it was indexed
+     */
+    public List<String> lookup(CharSequence word) {
+        List<String> anagrams = new ArrayList<>();
+        long[] key = new long[2];
+        key(word, key);
+        for (int group = lowerBound(key[0], key[1]); group < groupCount
+                && signatures.get(2 * group) == key[0] && signatures.get(2 * group + 1) == key[1]; group++) {
+            if (key[0] < 0 && !Anagrams.alphabetize(word.toString()).equals(Anagrams.alphabetize(word(groups.get(group))))) {
+                continue; // another alphabetized form with the same hash
+            }
+            for (int i = groups.get(group); i < groups.get(group + 1); i++) {
+                anagrams.add(word(i));
+            }
+        }
+        return anagrams;
+    }
+
+    /**
+     * @return the first group whose signature isn't less than (high, low)
+     */
+    private int lowerBound(long high, long low) {
+        int from = 0;
+        int to = groupCount;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            long middleHigh = signatures.get(2 * middle);
+            if (middleHigh < high || (middleHigh == high && signatures.get(2 * middle + 1) < low)) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    private String word(int i) {
+        int start = words.get(i);
+        byte[] bytes = new byte[words.get(i + 1) - start];
+        pool.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of anagram groups
+     */
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the number of words
+     */
+    public int size() {
+        return words.limit() - 1;
+    }
+
+    /**
+     * Builds or queries an index file:
+     * build <dictionary> <index> - writes the index of a dictionary
+     * lookup <index> <word>...   - prints the anagrams of the words
+     * Without arguments, runs a benchmark
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("build")) {
+            AnagramIndex index = AnagramIndex.of(Paths.get(args[1]));
+            write(index, Paths.get(args[2]));
+            System.out.println(index.size() + " words, " + index.groupCount() + " groups written to " + args[2]);
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("lookup")) {
+            AnagramIndexFile index = open(Paths.get(args[1]));
+            for (int i = 2; i < args.length; i++) {
+                System.out.println(args[i] + ": " + index.lookup(args[i]));
+            }
+            return;
+        }
+
+        Path dictionary = Files.createTempFile("dictionary", ".txt");
+        Path file = Files.createTempFile("dictionary", ".anagrams");
+        try {
+            int n = 5_000_000;
+            Random random = new Random(42);
+            StringBuilder text = new StringBuilder("staple petals pleats naïve vaïne\n");
+            for (int word = 0; word < n; word++) {
+                for (int letter = 3 + random.nextInt(7); letter > 0; letter--) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append('\n');
+                if (text.length() > 1 << 20) {
+                    Files.writeString(dictionary, text, StandardOpenOption.APPEND);
+                    text.setLength(0);
+                }
+            }
+            Files.writeString(dictionary, text, StandardOpenOption.APPEND);
+
+            long start = System.nanoTime();
+            AnagramIndex built = AnagramIndex.of(dictionary);
+            write(built, file);
+            long buildTime = System.nanoTime() - start;
+            System.out.printf("======== [Benchmark]: %d words, index of %d MB written in %d msecs ========%n",
+                built.size(), Files.size(file) >> 20, buildTime / 1_000_000);
+
+            for (int run = 0; run < 3; run++) {
+                // what Anagrams.main() does on every run
+                start = System.nanoTime();
+                Map<String, Set<String>> map = new HashMap<>();
+                try (Scanner scanner = new Scanner(dictionary)) {
+                    while (scanner.hasNext()) {
+                        String word = scanner.next();
+                        map.computeIfAbsent(Anagrams.alphabetize(word), unused -> new TreeSet<>()).add(word);
+                    }
+                }
+                Set<String> fromMap = map.get(Anagrams.alphabetize("staple"));
+                long mapTime = System.nanoTime() - start;
+                map = null;
+
+                start = System.nanoTime();
+                AnagramIndexFile index = open(file);
+                List<String> fromFile = index.lookup("staple");
+                long fileTime = System.nanoTime() - start;
+
+                String[] queries = {"petals", "naïve", "staples", "zzz", "anagram"};
+                start = System.nanoTime();
+                long found = 0;
+                for (int i = 0; i < 1_000_000; i++) {
+                    found += index.lookup(queries[i % queries.length]).size();
+                }
+                long lookupTime = System.nanoTime() - start;
+
+                if (run == 2) {
+                    System.out.println("staple: " + fromFile + ", vaïne: " + index.lookup("vaïne")
+                        + ", same results: " + new TreeSet<>(fromFile).equals(fromMap)
+                        + ", same groups: " + (index.groupCount() == built.groupCount()));
+                    System.out.printf("Scanner and HashMap: %d msecs, open() and lookup(): %.3f msecs%n",
+                        mapTime / 1_000_000, fileTime / 1e6);
+                    System.out.printf("1M lookups: %d msecs, %d anagrams%n", lookupTime / 1_000_000, found);
+                }
+            }
+        } finally {
+            Files.delete(dictionary);
+            Files.delete(file);
+        }
+    }
+}
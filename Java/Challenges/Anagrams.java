@@ -15,7 +15,12 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Stream;
 
+import Java.Java8.Streams.MappedLineSpliterator;
+
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.groupingByConcurrent;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Class that prints all the anagram groups whose size meets a user-specified
@@ -46,12 +51,27 @@ public class Anagrams {
      * @param s String to alphabetize
      * @return the String sorted in alphabetical order, case-insensitive
      */
-    private static String alphabetize(String s){
+    static String alphabetize(String s){
         char[] a = s.toLowerCase().toCharArray();   
         Arrays.sort(a);
         return new String(a);
     }
 
+    /**
+     * alphabetize() of a line read as a CharSequence, straight from its chars
+     * without making a String of the line first
+     * @param word the word to alphabetize
+     * @return the word sorted in alphabetical order, case-insensitive
+     */
+    static String alphabetize(CharSequence word){
+        char[] a = new char[word.length()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = Character.toLowerCase(word.charAt(i));
+        }
+        Arrays.sort(a);
+        return new String(a);
+    }
+
     /**
      * Iterates through the map's values and prints each lsit whose size meets
      * the user specified threshold
@@ -102,6 +122,45 @@ public class Anagrams {
         }
     }
 
+    /**
+     * Parallel version of streamAnagrams(). Files.lines() reads the dictionary
+     * sequentially, so the words are read from a MappedLineSpliterator, which
+     * splits the memory-mapped file at newlines, and grouped by
+     * groupingByConcurrent() into a single ConcurrentHashMap instead of one
+     * map per thread merged at the end. The key is alphabetized straight from
+     * the view of each line, which only becomes a String as it's added to its
+     * group. As with any groupingByConcurrent(), the words of a group are in
+     * no particular order
+     * 
+     * @param args - user arguments to run the program
+     */
+    private static void parallelStreamAnagrams(String[] args) {
+        Path dictionary = Paths.get(args[0]);
+        int minGroupSize = Integer.parseInt(args[1]);
+
+        MappedLineSpliterator.lines(dictionary).parallel()
+            .collect(groupingByConcurrent(word -> alphabetize(word), mapping(CharSequence::toString, toList())))
+            .values().stream()
+            .filter(group -> group.size() >= minGroupSize)
+            .forEach(g -> System.out.println(g.size() + ": " + g));
+    }
+
+    /**
+     * Prints the anagram groups from an AnagramIndex, which groups the words
+     * in parallel by a signature computed without allocating, instead of the
+     * alphabetize()d String of every word. Words appear once per group, as
+     * in main()
+     * 
+     * @param args - user arguments to run the program
+     */
+    private static void indexedAnagrams(String[] args) {
+        Path dictionary = Paths.get(args[0]);
+        int minGroupSize = Integer.parseInt(args[1]);
+
+        AnagramIndex.of(dictionary)
+            .forEachGroup(minGroupSize, g -> System.out.println(g.size() + ": " + g));
+    }
+
     /** Although behaves the same way as above, overuses Streams making it hard
      * to read and maintain
      */
@@ -155,6 +214,12 @@ public class Anagrams {
         System.out.println("--- Angrams using Streams --- ");
         streamAnagramsBad(args);
         streamAnagrams(args);
+
+        System.out.println("--- Angrams using parallel Streams --- ");
+        parallelStreamAnagrams(args);
+
+        System.out.println("--- Angrams using an AnagramIndex --- ");
+        indexedAnagrams(args);
     } // end of Main
 
 } // end of Class
\ No newline at end of file
@@ -0,0 +1,198 @@
+package Java.Java8.Collectors;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A List Collector built for parallel streams.
+ *
+ * ToListCollector accumulates with List::add into an ArrayList and combines
+ * with addAll(). Under parallel() every merge copies the whole right list into
+ * the left one, and ArrayList grows by copying its array as well, so the same
+ * elements are copied again and again as the splits merge up the tree.
+ *
+ * This collector appends into chunks instead:
+ *
+ * 1) supplier    - every split gets its own Chunks, so no lock is ever shared
+ * 2) accumulator - appends into the last chunk of the split; when it's full a
+ *                  new chunk twice as large is linked after it, and nothing
+ *                  that was already added is copied
+ * 3) combiner    - links the chunks of the right split after the chunks of the
+ *                  left split, O(1) whatever their size, keeping stream order
+ * 4) finisher    - the total size is known exactly by now, so a single flat
+ *                  array of that size is allocated and every chunk copied into
+ *                  it once. If everything fits in one full chunk, that chunk
+ *                  becomes the list as is.
+ *
+ * A Collector never sees the size of the stream, so every container starts
+ * with a small chunk. toList(stream) is the SIZED-aware path: a sequential
+ * stream of known size, e.g. list.stream(), is drained into one chunk of
+ * exactly that size, which becomes the list without any copy.
+ *
+ * The result is a fixed-size List backed by the flat array (like
+ * Arrays.asList), elements can be set but add() and remove() throw
+ * UnsupportedOperationException, where Collectors.toList() returns an
+ * ArrayList. Copy it into an ArrayList to grow it.
+ *
+ * Characteristics: none. Not IDENTITY_FINISH since the chunks are flattened,
+ * not CONCURRENT since the chunks of a split aren't thread-safe, and not
+ * UNORDERED since the stream order is kept.
+ */
+public class ChunkedListCollector<T> implements Collector<T, ChunkedListCollector.Chunks<T>, List<T>> {
+
+    private static final int FIRST_CHUNK = 16;
+    private static final int MAX_CHUNK = 1 << 20;
+    /** Largest array the JVM allocates */
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Linked chunks of the elements collected by a split
+     */
+    static final class Chunks<T> {
+        private Chunk head;
+        private Chunk tail;
+        private int size;
+
+        Chunks(int capacity) {
+            head = tail = new Chunk(capacity);
+        }
+
+        void add(T element) {
+            if (tail.size == tail.items.length) {
+                Chunk chunk = new Chunk(Math.min(MAX_CHUNK, tail.items.length << 1));
+                tail.next = chunk;
+                tail = chunk;
+            }
+            tail.items[tail.size++] = element;
+            size++;
+        }
+
+        Chunks<T> link(Chunks<T> right) {
+            if (right.size == 0) {
+                return this;
+            }
+            if (size == 0) {
+                return right;
+            }
+            tail.next = right.head;
+            tail = right.tail;
+            size += right.size;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(Consumer<? super T> action) {
+            for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+                for (int i = 0; i < chunk.size; i++) {
+                    action.accept((T) chunk.items[i]);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> flatten() {
+            if (head.size == size && head.items.length == size) {
+                return Arrays.asList((T[]) head.items); // a single full chunk, no copy
+            }
+            Object[] items = new Object[size];
+            int offset = 0;
+            for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+                System.arraycopy(chunk.items, 0, items, offset, chunk.size);
+                offset += chunk.size;
+            }
+            return Arrays.asList((T[]) items);
+        }
+    }
+
+    private static final class Chunk {
+        final Object[] items;
+        int size;
+        Chunk next;
+
+        Chunk(int capacity) {
+            items = new Object[capacity];
+        }
+    }
+
+    /**
+     * Collects a stream into a fixed-size List, presized when the size of the
+     * stream is known. A sequential SIZED stream is drained into a single
+     * chunk of exactly its size, which becomes the List as is. A parallel
+     * stream, or one of unknown size, is collected by a ChunkedListCollector,
+     * so no split allocates more than a small first chunk
+     * @param stream the stream to collect, consumed
+     * @return the elements in stream order, in a List that can't grow
+     */
+    public static <T> List<T> toList(Stream<T> stream) {
+        if (stream.isParallel()) {
+            return stream.collect(new ChunkedListCollector<>());
+        }
+        Spliterator<T> spliterator = stream.spliterator();
+        long size = spliterator.getExactSizeIfKnown();
+        Chunks<T> chunks = new Chunks<>(size >= 0 && size <= MAX_ARRAY ? (int) Math.max(1, size) : FIRST_CHUNK);
+        spliterator.forEachRemaining(chunks::add);
+        return chunks.flatten();
+    }
+
+    @Override
+    public Supplier<Chunks<T>> supplier() {
+        return () -> new Chunks<>(FIRST_CHUNK);
+    }
+
+    @Override
+    public BiConsumer<Chunks<T>, T> accumulator() {
+        return Chunks::add;
+    }
+
+    @Override
+    public BinaryOperator<Chunks<T>> combiner() {
+        return Chunks::link;
+    }
+
+    @Override
+    public Function<Chunks<T>, List<T>> finisher() {
+        return Chunks::flatten;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // forked, warmed up runs of PrimeCollectorHarness
+        Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("Collectors.toList()", n -> IntStream.range(0, n).boxed().collect(Collectors.toList()));
+        benchmarks.put("ToListCollector", n -> IntStream.range(0, n).boxed().collect(new ToListCollector<>()));
+        benchmarks.put("ChunkedListCollector", n -> IntStream.range(0, n).boxed().collect(new ChunkedListCollector<>()));
+        benchmarks.put("ChunkedListCollector.toList()", n -> toList(IntStream.range(0, n).boxed()));
+        benchmarks.put("Collectors.toList() parallel",
+            n -> IntStream.range(0, n).parallel().boxed().collect(Collectors.toList()));
+        benchmarks.put("ToListCollector parallel",
+            n -> IntStream.range(0, n).parallel().boxed().collect(new ToListCollector<>()));
+        benchmarks.put("ChunkedListCollector parallel",
+            n -> IntStream.range(0, n).parallel().boxed().collect(new ChunkedListCollector<>()));
+        PrimeCollectorHarness.run(ChunkedListCollector.class, "collecting n Integers into a List",
+            benchmarks, new int[] {10_000_000}, args);
+    }
+}
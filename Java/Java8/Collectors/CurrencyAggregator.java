@@ -0,0 +1,419 @@
+package Java.Java8.Collectors;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import Java.Java8.Collectors.GroupingTransactions.Currency;
+import Java.Java8.Collectors.GroupingTransactions.Transaction;
+
+/**
+ * Running per-Currency aggregates of an unbounded feed of transactions, fed
+ * by many threads at once, instead of grouping a List of every transaction.
+ *
+ * Only count, sum, min and max are kept per Currency, in a LongAdder, a
+ * DoubleAdder and two DoubleAccumulators: each of them is striped in cells
+ * that the threads update without contending on a single variable. Reading
+ * them while they're updated would mix, say, a sum including a transaction
+ * with a count that doesn't, so the adders are never read while written:
+ *
+ * 1) the adders live in a Segment, and producers record into the live one.
+ *    Every producer marks its entry into and exit from the segment in two more
+ *    LongAdders, and doesn't record into a segment that was sealed
+ * 2) to read, the live segment is sealed and replaced with a fresh one, then
+ *    the reader waits for the producers that already entered it to exit. No
+ *    one writes to the sealed segment after that, so its adders are read
+ *    consistently into an immutable Statistics per Currency
+ *
+ * Time is split into tumbling windows of a fixed length. A segment never
+ * spans two windows: the first producer or reader seeing the clock past the
+ * end of the window closes it, and the last closed windows are kept. A
+ * sliding window is then the current window with the windows closed before
+ * it, up to the number of windows kept.
+ *
+ * CurrencyAggregator aggregator = new CurrencyAggregator(Duration.ofSeconds(1), 60);
+ * aggregator.accept(transaction);                  // from any thread
+ * Snapshot lastMinute = aggregator.sliding();      // last 60 windows of 1 second
+ */
+public class CurrencyAggregator {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    /**
+     * Immutable count, sum, min and max of the values of a Currency
+     */
+    public static final class Statistics {
+        static final Statistics EMPTY =
+            new Statistics(0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        Statistics(long count, double sum, double min, double max) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        Statistics merge(Statistics other) {
+            if (other.count == 0) {
+                return this;
+            }
+            if (count == 0) {
+                return other;
+            }
+            return new Statistics(count + other.count, sum + other.sum,
+                Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the smallest value, Double.POSITIVE_INFINITY if none
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return the largest value, Double.NEGATIVE_INFINITY if none
+         */
+        public double getMax() {
+            return max;
+        }
+
+        public double getAverage() {
+            return count > 0 ? sum / count : 0.0d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{count=%d, sum=%.1f, min=%.1f, average=%.1f, max=%.1f}",
+                count, sum, min, getAverage(), max);
+        }
+    }
+
+    /**
+     * Immutable Statistics of every Currency over a period of time
+     */
+    public static final class Snapshot {
+        private final long start;
+        private final long end;
+        private final Statistics[] statistics;   // indexed by Currency.ordinal()
+
+        Snapshot(long start, long end, Statistics[] statistics) {
+            this.start = start;
+            this.end = end;
+            this.statistics = statistics;
+        }
+
+        /**
+         * @return the beginning of the period in milliseconds, inclusive
+         */
+        public long start() {
+            return start;
+        }
+
+        /**
+         * @return the end of the period in milliseconds, exclusive
+         */
+        public long end() {
+            return end;
+        }
+
+        public Statistics get(Currency currency) {
+            return statistics[currency.ordinal()];
+        }
+
+        /**
+         * @return the Statistics of the currencies having transactions
+         */
+        public Map<Currency, Statistics> toMap() {
+            Map<Currency, Statistics> result = new EnumMap<>(Currency.class);
+            for (Currency currency : CURRENCIES) {
+                if (statistics[currency.ordinal()].count > 0) {
+                    result.put(currency, statistics[currency.ordinal()]);
+                }
+            }
+            return result;
+        }
+
+        public long count() {
+            long count = 0;
+            for (Statistics currency : statistics) {
+                count += currency.count;
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ") " + toMap();
+        }
+    }
+
+    /**
+     * The adders of one Currency in a Segment
+     */
+    private static final class Cell {
+        final LongAdder count = new LongAdder();
+        final DoubleAdder sum = new DoubleAdder();
+        final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+        Statistics read() {
+            return new Statistics(count.sum(), sum.sum(), min.get(), max.get());
+        }
+    }
+
+    private static final class Segment {
+        final LongAdder entered = new LongAdder();
+        final LongAdder exited = new LongAdder();
+        final Cell[] cells = new Cell[CURRENCIES.length];
+        volatile boolean sealed;
+
+        Segment() {
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = new Cell();
+            }
+        }
+    }
+
+    private final long windowMillis;
+    private final int windows;
+    private final LongSupplier clock;
+
+    private volatile Segment live = new Segment();
+    private volatile long windowEnd;
+
+    // Guarded by this
+    private long windowStart;
+    private final Statistics[] window = emptyStatistics();   // sealed segments of the current window
+    private final Deque<Snapshot> closed = new ArrayDeque<>();
+    private final long started;
+    private final Statistics[] total = emptyStatistics();    // every closed window
+
+    /**
+     * @param window  the length of a tumbling window
+     * @param windows how many closed windows to keep, a sliding window is
+     *                made of the current one and windows - 1 closed ones
+     */
+    public CurrencyAggregator(Duration window, int windows) {
+        this(window.toMillis(), windows, System::currentTimeMillis);
+    }
+
+    CurrencyAggregator(long windowMillis, int windows, LongSupplier clock) {
+        if (windowMillis <= 0 || windows <= 0) {
+            throw new IllegalArgumentException("Window length and count must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.windows = windows;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.started = now - now % windowMillis;
+        this.windowStart = started;
+        this.windowEnd = started + windowMillis;
+    }
+
+    private static Statistics[] emptyStatistics() {
+        Statistics[] statistics = new Statistics[CURRENCIES.length];
+        Arrays.fill(statistics, Statistics.EMPTY);
+        return statistics;
+    }
+
+    /**
+     * Records a transaction, safe to call from any number of threads
+     */
+    public void accept(Transaction transaction) {
+        accept(transaction.getCurrency(), transaction.getValue());
+    }
+
+    /**
+     * Records a transaction, safe to call from any number of threads
+     */
+    public void accept(Currency currency, double value) {
+        if (clock.getAsLong() >= windowEnd) {
+            advance();
+        }
+        while (true) {
+            Segment segment = live;
+            segment.entered.increment();
+            if (!segment.sealed) {
+                Cell cell = segment.cells[currency.ordinal()];
+                cell.count.increment();
+                cell.sum.add(value);
+                cell.min.accumulate(value);
+                cell.max.accumulate(value);
+                segment.exited.increment();
+                return;
+            }
+            segment.exited.increment(); // sealed meanwhile, retry in the new live segment
+        }
+    }
+
+    /**
+     * Seals the live segment, installs a new one, waits until no producer
+     * writes to the sealed one anymore and reads it
+     */
+    private Statistics[] swapSegment() {
+        Segment segment = live;
+        live = new Segment();
+        segment.sealed = true;
+        // exited first: every producer counted in it is also counted in entered
+        while (segment.exited.sum() != segment.entered.sum()) {
+            Thread.onSpinWait();
+        }
+        Statistics[] statistics = new Statistics[CURRENCIES.length];
+        for (int i = 0; i < statistics.length; i++) {
+            statistics[i] = segment.cells[i].read();
+        }
+        return statistics;
+    }
+
+    private static void mergeInto(Statistics[] target, Statistics[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = target[i].merge(source[i]);
+        }
+    }
+
+    /**
+     * Closes the current window and the empty ones after it, up to now
+     */
+    private synchronized void advance() {
+        long now = clock.getAsLong();
+        if (now < windowEnd) {
+            return; // another thread advanced already
+        }
+        mergeInto(window, swapSegment());
+        while (now >= windowEnd) {
+            Snapshot snapshot = new Snapshot(windowStart, windowEnd, window.clone());
+            mergeInto(total, window);
+            closed.addLast(snapshot);
+            if (closed.size() > windows) {
+                closed.removeFirst();
+            }
+            Arrays.fill(window, Statistics.EMPTY);
+            windowStart = windowEnd;
+            long aligned = now - now % windowMillis;
+            if (aligned - windowStart >= windows * windowMillis) {
+                // only empty windows would be kept, don't close the older ones one by one
+                windowStart = aligned - windows * windowMillis;
+                closed.clear();
+            }
+            windowEnd = windowStart + windowMillis;
+        }
+    }
+
+    /**
+     * @return the Statistics of the current window up to now
+     */
+    public synchronized Snapshot current() {
+        advance();
+        mergeInto(window, swapSegment());
+        return new Snapshot(windowStart, clock.getAsLong() + 1, window.clone());
+    }
+
+    /**
+     * @return the last closed tumbling window, null if none was closed yet
+     */
+    public synchronized Snapshot tumbling() {
+        advance();
+        return closed.peekLast();
+    }
+
+    /**
+     * @return the closed tumbling windows kept, oldest first
+     */
+    public synchronized List<Snapshot> history() {
+        advance();
+        return Collections.unmodifiableList(new ArrayList<>(closed));
+    }
+
+    /**
+     * @return the Statistics of the sliding window made of the current window
+     *         and the windows - 1 closed before it
+     */
+    public synchronized Snapshot sliding() {
+        Snapshot current = current();
+        Statistics[] statistics = current.statistics.clone();
+        long start = current.start;
+        Iterator<Snapshot> newestFirst = closed.descendingIterator();
+        for (int kept = 0; kept < windows - 1 && newestFirst.hasNext(); kept++) {
+            Snapshot previous = newestFirst.next();
+            mergeInto(statistics, previous.statistics);
+            start = previous.start;
+        }
+        return new Snapshot(start, current.end, statistics);
+    }
+
+    /**
+     * @return the Statistics of every transaction recorded so far
+     */
+    public synchronized Snapshot snapshot() {
+        Snapshot current = current();
+        Statistics[] statistics = total.clone();
+        mergeInto(statistics, current.statistics);
+        return new Snapshot(started, current.end, statistics);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("======== Aggregating GroupingTransactions.transactions ========");
+        CurrencyAggregator aggregator = new CurrencyAggregator(Duration.ofSeconds(1), 5);
+        GroupingTransactions.transactions.parallelStream().forEach(aggregator::accept);
+        System.out.println(aggregator.snapshot().toMap());
+
+        int producers = Runtime.getRuntime().availableProcessors();
+        long millis = 3_000;
+        System.out.println("\n======== [Benchmark]: " + producers + " producers for " + millis
+            + " msecs, windows of 500 msecs ========");
+        CurrencyAggregator feed = new CurrencyAggregator(Duration.ofMillis(500), 4);
+        long deadline = System.currentTimeMillis() + millis;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.currentTimeMillis() < deadline) {
+                    for (int i = 0; i < 1_000; i++) {
+                        feed.accept(CURRENCIES[random.nextInt(CURRENCIES.length)], random.nextInt(1, 10_000));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(1_000);
+            Snapshot sliding = feed.sliding();
+            System.out.printf("sliding window of %d msecs: %,d transactions, EUR %s%n",
+                sliding.end() - sliding.start(), sliding.count(), sliding.get(Currency.EUR));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Snapshot snapshot = feed.snapshot();
+        System.out.printf("total: %,d transactions, %,.0f per second%n",
+            snapshot.count(), snapshot.count() * 1000.0 / millis);
+        System.out.println("last tumbling window: " + feed.tumbling());
+    }
+}
@@ -0,0 +1,310 @@
+package Java.Java8.Collectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import Java.Java8.Collectors.Grouping.CaloricLevel;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summarizingInt;
+import static java.util.stream.Collectors.summingLong;
+
+/**
+ * The menu stored by column instead of as a List of Dish objects.
+ *
+ * A List<Dish> is an array of references to objects scattered in the heap,
+ * and every query dereferences every Dish, boxing its results along the way in
+ * groupingBy() and summingInt(). A DishTable keeps one array per field:
+ *
+ * - calories   int[]   the calories of row i
+ * - type       byte[]  the ordinal() of the Dish.Type of row i
+ * - vegetarian BitSet  bit i set if row i is vegetarian
+ * - name       int[]   the index of the name of row i in a dictionary of the
+ *                      distinct names, which are only stored once
+ *
+ * Filters return a BitSet of the selected rows, combined with and()/or() like
+ * the WHERE clause of a query, and aggregations are loops over the primitive
+ * arrays, e.g. the calories summed per type are long[Dish.Type.values().length]
+ * indexed by the type column. The JIT compiles such loops over int[] and byte[]
+ * into SIMD instructions on its own, so there is no need for the incubating
+ * Vector API, and there is no object per row anywhere.
+ *
+ * DishTable table = DishTable.of(menu);
+ * long vegetarianCalories = table.sumCalories(table.vegetarian());
+ */
+public class DishTable {
+
+    private static final Dish.Type[] TYPES = Dish.Type.values();
+    private static final CaloricLevel[] LEVELS = CaloricLevel.values();
+
+    private int size;
+    private int[] calories;
+    private byte[] types;
+    private final BitSet vegetarian = new BitSet();
+    private int[] names;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+    public DishTable() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of rows expected, the table grows past it
+     */
+    public DishTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.calories = new int[capacity];
+        this.types = new byte[capacity];
+        this.names = new int[capacity];
+    }
+
+    /**
+     * @return a table of the dishes, in the same order
+     */
+    public static DishTable of(List<Dish> dishes) {
+        DishTable table = new DishTable(dishes.size());
+        for (Dish dish : dishes) {
+            table.add(dish.getName(), dish.isVegetarian(), dish.getCalories(), dish.getType());
+        }
+        return table;
+    }
+
+    /**
+     * Appends a row
+     */
+    public void add(String name, boolean isVegetarian, int dishCalories, Dish.Type type) {
+        if (size == calories.length) {
+            int capacity = size << 1;
+            calories = Arrays.copyOf(calories, capacity);
+            types = Arrays.copyOf(types, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        Integer id = dictionaryIndex.get(name);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(name);
+            dictionaryIndex.put(name, id);
+        }
+        calories[size] = dishCalories;
+        types[size] = (byte) type.ordinal();
+        vegetarian.set(size, isVegetarian);
+        names[size] = id;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return row i as a Dish object
+     */
+    public Dish get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return new Dish(dictionary.get(names[row]), vegetarian.get(row), calories[row], TYPES[types[row]]);
+    }
+
+    // ================================ Filters ================================
+
+    /**
+     * @return every row
+     */
+    public BitSet all() {
+        BitSet rows = new BitSet(size);
+        rows.set(0, size);
+        return rows;
+    }
+
+    /**
+     * @return the vegetarian rows, a copy that can be combined with others
+     */
+    public BitSet vegetarian() {
+        return (BitSet) vegetarian.clone();
+    }
+
+    /**
+     * @return the rows of the given type
+     */
+    public BitSet ofType(Dish.Type type) {
+        byte ordinal = (byte) type.ordinal();
+        BitSet rows = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (types[i] == ordinal) {
+                rows.set(i);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the rows with more than the given calories
+     */
+    public BitSet caloriesGreaterThan(int threshold) {
+        BitSet rows = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (calories[i] > threshold) {
+                rows.set(i);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the names of the dishes in the rows, in row order
+     */
+    public List<String> names(BitSet rows) {
+        List<String> selected = new ArrayList<>(rows.cardinality());
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            selected.add(dictionary.get(names[i]));
+        }
+        return selected;
+    }
+
+    // ============================== Aggregations ==============================
+
+    /**
+     * @return the calories of every dish summed
+     */
+    public long sumCalories() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += calories[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the calories of the dishes in the rows summed
+     */
+    public long sumCalories(BitSet rows) {
+        long sum = 0;
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            sum += calories[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the count, sum, min, average and max of the calories of the rows
+     */
+    public IntSummaryStatistics summarizeCalories(BitSet rows) {
+        IntSummaryStatistics statistics = new IntSummaryStatistics();
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            statistics.accept(calories[i]);
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the calories summed per Dish.Type, indexed by ordinal()
+     */
+    public long[] sumCaloriesByType() {
+        long[] sums = new long[TYPES.length];
+        for (int i = 0; i < size; i++) {
+            sums[types[i]] += calories[i];
+        }
+        return sums;
+    }
+
+    /**
+     * @return the number of dishes per Dish.Type, indexed by ordinal()
+     */
+    public int[] countByType() {
+        int[] counts = new int[TYPES.length];
+        for (int i = 0; i < size; i++) {
+            counts[types[i]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Same classification as Grouping.groupDishesByCaloricLevel(), branch-free:
+     * each comparison adds 0 or 1 to the level
+     * @return the number of dishes per CaloricLevel, indexed by ordinal()
+     */
+    public int[] countByCaloricLevel() {
+        int[] counts = new int[LEVELS.length];
+        for (int i = 0; i < size; i++) {
+            int c = calories[i];
+            counts[((400 - c) >>> 31) + ((700 - c) >>> 31)]++; // DIET <= 400 < NORMAL <= 700 < FAT
+        }
+        return counts;
+    }
+
+    /**
+     * @return sumCaloriesByType() as a Map, as groupingBy(Dish::getType,
+     * summingInt(Dish::getCalories)) would return it
+     */
+    public Map<Dish.Type, Long> sumCaloriesByTypeAsMap() {
+        long[] sums = sumCaloriesByType();
+        int[] counts = countByType();
+        Map<Dish.Type, Long> result = new EnumMap<>(Dish.Type.class);
+        for (Dish.Type type : TYPES) {
+            if (counts[type.ordinal()] > 0) {
+                result.put(type, sums[type.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DishTable{rows=" + size + ", distinct names=" + dictionary.size() + "}";
+    }
+
+    public static void main(String[] args) {
+        DishTable menu = DishTable.of(Dish.menu);
+        System.out.println("======== Menu as a columnar table ========");
+        System.out.println(menu);
+        System.out.println("Total calories: " + menu.sumCalories());
+        System.out.println("Calories by type: " + menu.sumCaloriesByTypeAsMap());
+        System.out.println("Dishes by caloric level: " + Arrays.toString(menu.countByCaloricLevel())
+            + " for " + Arrays.toString(LEVELS));
+        BitSet caloricVegetarian = menu.vegetarian();
+        caloricVegetarian.and(menu.caloriesGreaterThan(500));
+        System.out.println("Vegetarian dishes over 500 calories: " + menu.names(caloricVegetarian));
+        System.out.println("Vegetarian calories: " + menu.summarizeCalories(menu.vegetarian()));
+
+        int n = 5_000_000;
+        Random random = new Random(42);
+        List<Dish> dishes = new ArrayList<>(n);
+        DishTable table = new DishTable(n);
+        for (int i = 0; i < n; i++) {
+            Dish dish = Dish.menu.get(random.nextInt(Dish.menu.size()));
+            int dishCalories = 50 + random.nextInt(1000);
+            dishes.add(new Dish(dish.getName(), dish.isVegetarian(), dishCalories, dish.getType()));
+            table.add(dish.getName(), dish.isVegetarian(), dishCalories, dish.getType());
+        }
+        System.out.println("\n======== [Benchmark]: " + n + " dishes, objects vs columns ========");
+        for (int run = 0; run < 10; run++) {
+            long start = System.nanoTime();
+            Map<Dish.Type, Long> byType = dishes.stream()
+                .collect(groupingBy(Dish::getType, summingLong(Dish::getCalories)));
+            IntSummaryStatistics vegetarianStream = dishes.stream().filter(Dish::isVegetarian)
+                .collect(summarizingInt(Dish::getCalories));
+            long streams = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<Dish.Type, Long> byTypeColumns = table.sumCaloriesByTypeAsMap();
+            IntSummaryStatistics vegetarianColumns = table.summarizeCalories(table.vegetarian());
+            long columns = System.nanoTime() - start;
+
+            if (run == 9) {
+                System.out.println("same results: " + (byType.equals(byTypeColumns)
+                    && vegetarianStream.toString().equals(vegetarianColumns.toString())));
+                System.out.printf("Stream<Dish>: %d msecs, DishTable: %d msecs%n",
+                    streams / 1_000_000, columns / 1_000_000);
+            }
+        }
+    }
+}
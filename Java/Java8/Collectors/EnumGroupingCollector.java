@@ -0,0 +1,144 @@
+package Java.Java8.Collectors;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * A groupingBy() Collector specialized for classification functions that
+ * return an enum, such as Dish.Type, Grouping.CaloricLevel or
+ * GroupingTransactions.Currency.
+ *
+ * groupingBy() accumulates into a HashMap, so every element hashes its key and
+ * looks up its bucket. An enum has a fixed number of constants, each with its
+ * own ordinal(), so the groups can live in a plain array instead:
+ *
+ * 1) supplier    - an array with one slot per enum constant, all empty
+ * 2) accumulator - classifies the element and indexes the array by the
+ *                  ordinal() of its key, creating the downstream container of
+ *                  that slot the first time the key is seen
+ * 3) combiner    - merges two arrays slot by slot with the downstream combiner,
+ *                  so the groups can be built in parallel
+ * 4) finisher    - copies the slots that were used into an EnumMap, which is
+ *                  itself an array indexed by ordinal, applying the downstream
+ *                  finisher to each. As with groupingBy(), a key appears only
+ *                  if at least one element was classified under it.
+ *
+ * Map<Currency, List<Transaction>> byCurrency = transactions.stream()
+ *     .collect(EnumGroupingCollector.groupingByEnum(Currency.class, Transaction::getCurrency));
+ */
+public class EnumGroupingCollector<T, K extends Enum<K>, A, D>
+    implements Collector<T, Object[], Map<K, D>> {
+
+    private final Class<K> keyType;
+    private final K[] keys;
+    private final Function<? super T, ? extends K> classifier;
+    private final Collector<? super T, A, D> downstream;
+
+    /**
+     * @param keyType    the enum class of the keys
+     * @param classifier classification function mapping elements to an enum key
+     * @param downstream Collector reducing the elements of each group
+     */
+    public EnumGroupingCollector(Class<K> keyType, Function<? super T, ? extends K> classifier,
+                                 Collector<? super T, A, D> downstream) {
+        this.keyType = keyType;
+        this.keys = keyType.getEnumConstants();
+        this.classifier = classifier;
+        this.downstream = downstream;
+    }
+
+    /**
+     * Groups elements by an enum key into Lists, like groupingBy(classifier)
+     */
+    public static <T, K extends Enum<K>> Collector<T, ?, Map<K, List<T>>>
+        groupingByEnum(Class<K> keyType, Function<? super T, ? extends K> classifier) {
+        return new EnumGroupingCollector<>(keyType, classifier, Collectors.toList());
+    }
+
+    /**
+     * Groups elements by an enum key, reducing each group with a downstream
+     * Collector, like groupingBy(classifier, downstream)
+     */
+    public static <T, K extends Enum<K>, A, D> Collector<T, ?, Map<K, D>>
+        groupingByEnum(Class<K> keyType, Function<? super T, ? extends K> classifier,
+                       Collector<? super T, A, D> downstream) {
+        return new EnumGroupingCollector<>(keyType, classifier, downstream);
+    }
+
+    @Override
+    public Supplier<Object[]> supplier() {
+        return () -> new Object[keys.length];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BiConsumer<Object[], T> accumulator() {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        return (groups, element) -> {
+            K key = classifier.apply(element);
+            if (key == null) {
+                throw new NullPointerException("element cannot be mapped to a null key");
+            }
+            int ordinal = key.ordinal();
+            A container = (A) groups[ordinal];
+            if (container == null) {
+                container = downstreamSupplier.get();
+                groups[ordinal] = container;
+            }
+            downstreamAccumulator.accept(container, element);
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BinaryOperator<Object[]> combiner() {
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        return (left, right) -> {
+            for (int i = 0; i < left.length; i++) {
+                if (right[i] == null) {
+                    continue;
+                }
+                left[i] = left[i] == null ? right[i] : downstreamCombiner.apply((A) left[i], (A) right[i]);
+            }
+            return left;
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Function<Object[], Map<K, D>> finisher() {
+        Function<A, D> downstreamFinisher = downstream.finisher();
+        return groups -> {
+            Map<K, D> result = new EnumMap<>(keyType);
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i] != null) {
+                    result.put(keys[i], downstreamFinisher.apply((A) groups[i]));
+                }
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Same as the downstream Collector, except that the array always has to be
+     * finished into an EnumMap, and it's never shared between threads
+     */
+    @Override
+    public Set<Characteristics> characteristics() {
+        Set<Characteristics> characteristics = EnumSet.noneOf(Characteristics.class);
+        if (downstream.characteristics().contains(Characteristics.UNORDERED)) {
+            characteristics.add(Characteristics.UNORDERED);
+        }
+        return characteristics;
+    }
+}
@@ -0,0 +1,264 @@
+package Java.Java8.Collectors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Runs any number of Collectors over a stream in a single traversal, what
+ * Collectors.teeing() does for two.
+ *
+ * Every Collector added to a Builder returns a typed Key; the fused Collector
+ * accumulates each element into the containers of all the Collectors, and the
+ * Results it finishes into return the result of each of them by its Key:
+ *
+ * 1) supplier    - an array with the container of every Collector
+ * 2) accumulator - passes the element to the accumulator of every Collector
+ * 3) combiner    - combines the arrays container by container, so the fused
+ *                  Collector works on parallel streams as the Collectors do
+ * 4) finisher    - applies the finisher of every Collector
+ *
+ * The gain is the traversals saved: parsing, mapping or reading the source
+ * once instead of once per Collector. Over a List already in memory, with
+ * nothing to compute per element, separate passes can be as fast, since each
+ * of them calls a single accumulator the JIT can inline.
+ *
+ * FusedCollector.Builder<Dish> builder = FusedCollector.builder();
+ * FusedCollector.Key<Long> count = builder.add(counting());
+ * FusedCollector.Key<Integer> calories = builder.add(summingInt(Dish::getCalories));
+ * FusedCollector.Results results = menu.stream().collect(builder.build());
+ * long dishes = results.get(count);
+ */
+public class FusedCollector<T> implements Collector<T, Object[], FusedCollector.Results> {
+
+    /**
+     * Typed handle to the result of a Collector added to a Builder
+     */
+    public static final class Key<R> {
+        private final Object owner;
+        private final int index;
+
+        private Key(Object owner, int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The results of the fused Collectors
+     */
+    public static final class Results {
+        private final Object owner;
+        private final Object[] results;
+
+        private Results(Object owner, Object[] results) {
+            this.owner = owner;
+            this.results = results;
+        }
+
+        /**
+         * @param key the Key returned when the Collector was added
+         * @return the result of that Collector
+         */
+        @SuppressWarnings("unchecked")
+        public <R> R get(Key<R> key) {
+            if (key.owner != owner || key.index >= results.length) {
+                throw new IllegalArgumentException("Key of another FusedCollector");
+            }
+            return (R) results[key.index];
+        }
+
+        public int size() {
+            return results.length;
+        }
+    }
+
+    /**
+     * Collects the Collectors to fuse. Frozen by build(), so that every Key it
+     * returned has a result in the Results of the built Collector
+     */
+    public static final class Builder<T> {
+        private final List<Collector<? super T, ?, ?>> collectors = new ArrayList<>();
+        private boolean built;
+
+        /**
+         * @param collector one more Collector to run in the same traversal
+         * @return the Key of its result in Results
+         * @throws IllegalStateException if build() was already called
+         */
+        public <R> Key<R> add(Collector<? super T, ?, R> collector) {
+            if (built) {
+                throw new IllegalStateException("Builder already built, start a new one");
+            }
+            collectors.add(collector);
+            return new Key<>(this, collectors.size() - 1);
+        }
+
+        /**
+         * @return a Collector running every Collector added
+         */
+        public FusedCollector<T> build() {
+            built = true;
+            return new FusedCollector<>(this, collectors);
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    private final Object owner;
+    private final List<Collector<? super T, Object, Object>> collectors = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private FusedCollector(Object owner, List<Collector<? super T, ?, ?>> collectors) {
+        this.owner = owner;
+        for (Collector<? super T, ?, ?> collector : collectors) {
+            // the containers and the results are only ever handled as Objects
+            this.collectors.add((Collector<? super T, Object, Object>) collector);
+        }
+    }
+
+    @Override
+    public Supplier<Object[]> supplier() {
+        List<Supplier<Object>> suppliers = new ArrayList<>(collectors.size());
+        for (Collector<? super T, Object, Object> collector : collectors) {
+            suppliers.add(collector.supplier());
+        }
+        return () -> {
+            Object[] containers = new Object[suppliers.size()];
+            for (int i = 0; i < containers.length; i++) {
+                containers[i] = suppliers.get(i).get();
+            }
+            return containers;
+        };
+    }
+
+    @Override
+    public BiConsumer<Object[], T> accumulator() {
+        List<BiConsumer<Object, ? super T>> accumulators = new ArrayList<>(collectors.size());
+        for (Collector<? super T, Object, Object> collector : collectors) {
+            accumulators.add(collector.accumulator());
+        }
+        return (containers, element) -> {
+            for (int i = 0; i < containers.length; i++) {
+                accumulators.get(i).accept(containers[i], element);
+            }
+        };
+    }
+
+    @Override
+    public BinaryOperator<Object[]> combiner() {
+        List<BinaryOperator<Object>> combiners = new ArrayList<>(collectors.size());
+        for (Collector<? super T, Object, Object> collector : collectors) {
+            combiners.add(collector.combiner());
+        }
+        return (left, right) -> {
+            for (int i = 0; i < left.length; i++) {
+                left[i] = combiners.get(i).apply(left[i], right[i]);
+            }
+            return left;
+        };
+    }
+
+    @Override
+    public Function<Object[], Results> finisher() {
+        List<Function<Object, Object>> finishers = new ArrayList<>(collectors.size());
+        for (Collector<? super T, Object, Object> collector : collectors) {
+            finishers.add(collector.finisher());
+        }
+        return containers -> {
+            Object[] results = new Object[containers.length];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = finishers.get(i).apply(containers[i]);
+            }
+            return new Results(owner, results);
+        };
+    }
+
+    /**
+     * UNORDERED if every fused Collector is. Never CONCURRENT, since the
+     * containers are in an array of their own per split, and never
+     * IDENTITY_FINISH, since the results are wrapped
+     */
+    @Override
+    public Set<Characteristics> characteristics() {
+        for (Collector<? super T, Object, Object> collector : collectors) {
+            if (!collector.characteristics().contains(Characteristics.UNORDERED)) {
+                return Collections.emptySet();
+            }
+        }
+        return Collections.unmodifiableSet(EnumSet.of(Characteristics.UNORDERED));
+    }
+
+    /** The source of the benchmarks, built once per fork outside the measured calls */
+    private static List<String> lines = Collections.emptyList();
+
+    /**
+     * A source that costs something to traverse again, as a file or a query
+     * would: every pass parses the values
+     */
+    private static List<String> lines(int n) {
+        if (lines.size() != n) {
+            lines = new Random(42).ints(n, 0, 1_000_000).mapToObj(Integer::toString)
+                .collect(Collectors.toList());
+        }
+        return lines;
+    }
+
+    private static Object[] separate(List<String> lines) {
+        long count = lines.parallelStream().map(Integer::valueOf).collect(Collectors.counting());
+        int sum = lines.parallelStream().map(Integer::valueOf).collect(Collectors.summingInt(Integer::intValue));
+        double average = lines.parallelStream().map(Integer::valueOf)
+            .collect(Collectors.averagingInt(Integer::intValue));
+        Optional<Integer> max = lines.parallelStream().map(Integer::valueOf)
+            .collect(Collectors.maxBy(Integer::compare));
+        Optional<Integer> min = lines.parallelStream().map(Integer::valueOf)
+            .collect(Collectors.minBy(Integer::compare));
+        return new Object[] {count, sum, average, max, min};
+    }
+
+    private static Object[] fused(List<String> lines) {
+        Builder<Integer> builder = builder();
+        Key<Long> count = builder.add(Collectors.counting());
+        Key<Integer> sum = builder.add(Collectors.summingInt(Integer::intValue));
+        Key<Double> average = builder.add(Collectors.averagingInt(Integer::intValue));
+        Key<Optional<Integer>> max = builder.add(Collectors.maxBy(Integer::compare));
+        Key<Optional<Integer>> min = builder.add(Collectors.minBy(Integer::compare));
+        Results results = lines.parallelStream().map(Integer::valueOf).collect(builder.build());
+        return new Object[] {results.get(count), results.get(sum), results.get(average),
+            results.get(max), results.get(min)};
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("======== 5 statistics of 1000 parsed Integers ========");
+            Object[] fused = fused(lines(1_000));
+            System.out.println("count, sum, average, max, min: " + Arrays.toString(fused));
+            System.out.println("same results as 5 traversals: " + Arrays.equals(separate(lines(1_000)), fused));
+            System.out.println();
+        }
+
+        // forked, warmed up runs of PrimeCollectorHarness
+        Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("5 traversals", n -> separate(lines(n)));
+        benchmarks.put("1 fused traversal", n -> fused(lines(n)));
+        PrimeCollectorHarness.run(FusedCollector.class, "5 statistics of n parsed Integers",
+            benchmarks, new int[] {5_000_000}, args);
+    }
+}
@@ -23,6 +23,9 @@ import static java.util.stream.Collectors.reducing;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.summingInt;
 import static java.util.stream.Collectors.toCollection;
+import static Java.Java8.Collectors.EnumGroupingCollector.groupingByEnum;
+import static Java.Java8.Collectors.MultiLevelGroupingCollector.countingByAll;
+import static Java.Java8.Collectors.MultiLevelGroupingCollector.groupingByTwoLevels;
 
 /**
  * Grouping is a common database operation where items in a set are grouped
@@ -68,6 +71,19 @@ import static java.util.stream.Collectors.toCollection;
  * 12. Improve the result of mapping collector passed in to groupingBy() by
  * having more control of the output Set by using toCollection().
  * 
+ * Grouping by an enum key:
+ * 
+ * 13. Group dishes by Dish.Type and by CaloricLevel with EnumGroupingCollector,
+ * which indexes an array by the ordinal() of the key instead of hashing it,
+ * and finishes into an EnumMap.
+ * 
+ * Multilevel grouping of a parallel stream:
+ * 
+ * 14. Group by both Dish.Type and CaloricLevel as in 6., and count the dishes
+ * of each type and level, with MultiLevelGroupingCollector: a parallel stream
+ * accumulates into a single concurrent Map keyed by (type, level), which is
+ * expanded into the nested Map only once at the end.
+ * 
  * ================================= Methods =================================
  * -collect() - a terminal stream operation that combines all elements of a 
  * stream into a List, a reduction operation that takes an argumenty various
@@ -111,6 +127,22 @@ public class Grouping {
     // or Fat based on its number of Calories
     public enum CaloricLevel{ DIET, NORMAL, FAT }
 
+    /**
+     * The caloric level of a dish, the classifier of 2. as a method so that
+     * 13. and 14. can pass it by reference
+     */
+    private static CaloricLevel caloricLevel(Dish dish) {
+        if (dish.getCalories() <= 400) {
+            return CaloricLevel.DIET;
+        }
+        else if (dish.getCalories() <= 700) {
+            return CaloricLevel.NORMAL;
+        }
+        else {
+            return CaloricLevel.FAT;
+        }
+    }
+
     /**
      * 2. Classify dishes with something more complex than a simple property
      * accessor. Here we classify dishes based on CaloricLevel, where
@@ -365,6 +397,51 @@ public class Grouping {
         );
     }
 
+    /**
+     * 13. Group dishes by an enum key without hashing: Dish.Type and CaloricLevel
+     * are enums, so groupingByEnum() accumulates each group in the slot of an
+     * array indexed by the key's ordinal(), and finishes into an EnumMap.
+     * Same result as 1. and 2., but with the keys in declaration order.
+     * 
+     * @return a Map with Dish.Type as Key and List of all dishes as values
+     */
+    private static Map<Dish.Type, List<Dish>> groupDishesByTypeWithEnumMap() {
+        return menu.stream().collect(groupingByEnum(Dish.Type.class, Dish::getType));
+    }
+
+    /**
+     * 13. Same as 2. with an EnumMap, see above
+     * @return a Map with CaloricLevel as Key and List of all dishes as values
+     */
+    private static Map<CaloricLevel, List<Dish>> groupDishesByCaloricLevelWithEnumMap() {
+        return menu.stream().collect(
+            groupingByEnum(CaloricLevel.class, Grouping::caloricLevel));
+    }
+
+    /**
+     * 14. Same as 6. on a parallel stream, without a nested groupingBy():
+     * every dish is classified by both functions at once into a composite
+     * (type, level) key of a single ConcurrentHashMap shared by all threads,
+     * so there are no per-split Maps of Maps to merge.
+     * 
+     * @return a Mapping that groups every Dish.Type to another Map by
+     * CaloricLevel and a list of its associated Dishes
+     */
+    private static Map<Dish.Type, Map<CaloricLevel, List<Dish>>> groupDishedByTypeAndCaloricLevelConcurrently() {
+        return menu.parallelStream().collect(
+            groupingByTwoLevels(Dish::getType, Grouping::caloricLevel, toList()));
+    }
+
+    /**
+     * 14. Counts the dishes of every (Dish.Type, CaloricLevel) group with a
+     * LongAdder per group, so the parallel accumulation takes no lock
+     * @return a nested Map from Dish.Type to CaloricLevel to the number of dishes
+     */
+    private static Map<Object, Object> countDishesByTypeAndCaloricLevelConcurrently() {
+        return menu.parallelStream().collect(
+            countingByAll(List.of(Dish::getType, Grouping::caloricLevel)));
+    }
+
     public static void main(String[] args) {
         showMenu();
         System.out.println("\n======== Grouping Dishes in the Menu ========");
@@ -400,6 +477,16 @@ public class Grouping {
 
         System.out.println("\n======= Mapping and Grouping by Type using HashSet ========");
         System.out.println("[Caloric levels by type]: " + caloricLevelsByType2());
+
+        System.out.println("\n======= Grouping by Enum Keys into an EnumMap ========");
+        System.out.println("[Dishes grouped by type]\n " + groupDishesByTypeWithEnumMap());
+        System.out.println("\n[Dishes grouped by caloric level]\n " + groupDishesByCaloricLevelWithEnumMap());
+
+        System.out.println("\n======= Concurrent Multilevel Grouping ========");
+        System.out.println("[Dishes grouped by type and caloric level]\n "
+             + groupDishedByTypeAndCaloricLevelConcurrently());
+        System.out.println("\n[Count dishes by type and caloric level]\n "
+             + countDishesByTypeAndCaloricLevelConcurrently());
     }
 
     // Prints the available menu and respective calories
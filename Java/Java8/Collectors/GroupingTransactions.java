@@ -1,7 +1,9 @@
 package Java.Java8.Collectors;
 
 import static java.util.stream.Collectors.groupingBy;
+import static Java.Java8.Collectors.EnumGroupingCollector.groupingByEnum;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -36,6 +38,8 @@ public class GroupingTransactions {
   public static void main(String... args) {
     groupImperatively();
     groupFunctionally();
+    groupByEnum();
+    aggregateIncrementally();
   }
 
   /** Prior to Java 8 */
@@ -77,6 +81,31 @@ public class GroupingTransactions {
     System.out.println(transactionsByCurrencies);
   }
 
+  /**
+   * Currency is an enum, so the transactions can be grouped into an array
+   * indexed by Currency.ordinal() instead of a HashMap, and returned as an
+   * EnumMap, with the currencies in declaration order
+   */
+  private static void groupByEnum() {
+    Map<Currency, List<Transaction>> transactionsByCurrencies = transactions.stream()
+        .collect(groupingByEnum(Currency.class, Transaction::getCurrency));
+
+    System.out.println(transactionsByCurrencies);
+  }
+
+  /**
+   * When the transactions are an unbounded feed rather than a List, keeping
+   * every one of them grouped isn't possible: CurrencyAggregator only keeps the
+   * running count, sum, min and max per currency, and can be fed by many
+   * threads at once while consistent snapshots are read
+   */
+  private static void aggregateIncrementally() {
+    CurrencyAggregator aggregator = new CurrencyAggregator(Duration.ofMinutes(1), 60);
+    transactions.parallelStream().forEach(aggregator::accept);
+
+    System.out.println(aggregator.snapshot().toMap());
+  }
+
   // Transaction class that contains two fields: currency and value
   public static class Transaction {
 
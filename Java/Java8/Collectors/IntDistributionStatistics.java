@@ -0,0 +1,313 @@
+package Java.Java8.Collectors;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.averagingInt;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.summarizingInt;
+
+/**
+ * A state object collecting, in a single pass, everything IntSummaryStatistics
+ * does plus the shape of the distribution:
+ *
+ * 1) count, sum, min, max and average, as IntSummaryStatistics
+ * 2) variance and standard deviation, with Welford's online algorithm: the
+ *    running mean and the sum of squared distances from it (M2) are updated
+ *    by every value, which unlike sum(x^2) - sum(x)^2 / n doesn't lose all
+ *    precision when the variance is small next to the values
+ * 3) percentiles, from a log-linear histogram (HDR-histogram style): values
+ *    below 2^SUB_BITS have a bucket each, larger ones share a bucket with the
+ *    values having the same highest SUB_BITS + 1 bits. A percentile is then
+ *    exact for small values, and off by less than 1 / 2^SUB_BITS (about 3%)
+ *    relatively for large ones, with a fixed number of buckets
+ * 4) the top k values, kept in the bounded min-heap of TopKCollector
+ *
+ * Two statistics are merged by combine(), using Chan's formula for the
+ * variance, so the collector returned by summarizingDistribution() can be
+ * used on parallel streams.
+ *
+ * IntDistributionStatistics stats = menu.stream()
+ *     .collect(IntDistributionStatistics.summarizingDistribution(Dish::getCalories, 3));
+ */
+public class IntDistributionStatistics implements IntConsumer {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Exact buckets for [0, 32), then 32 buckets for every power of two up to 2^30 */
+    private static final int BUCKETS = SUB_BUCKETS + (Integer.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+    private static final int DEFAULT_TOP = 10;
+
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private double mean;
+    private double m2;
+
+    private final long[] positive = new long[BUCKETS];  // values >= 0
+    private long[] negative;                            // ~value for values < 0, allocated on first use
+
+    private final TopKCollector.IntHeap top;   // the largest values seen so far
+
+    /**
+     * Statistics keeping the 10 largest values
+     */
+    public IntDistributionStatistics() {
+        this(DEFAULT_TOP);
+    }
+
+    /**
+     * @param k how many of the largest values to keep, may be 0
+     */
+    public IntDistributionStatistics(int k) {
+        this.top = new TopKCollector.IntHeap(k);
+    }
+
+    /**
+     * Summarizes the int mapped from every element, like summarizingInt()
+     * @param mapper function mapping an element to the int to summarize
+     * @param k      how many of the largest values to keep
+     */
+    public static <T> Collector<T, ?, IntDistributionStatistics>
+        summarizingDistribution(ToIntFunction<? super T> mapper, int k) {
+        return Collector.of(
+            () -> new IntDistributionStatistics(k),
+            (stats, element) -> stats.accept(mapper.applyAsInt(element)),
+            IntDistributionStatistics::combine,
+            Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Same as above, keeping the 10 largest values
+     */
+    public static <T> Collector<T, ?, IntDistributionStatistics>
+        summarizingDistribution(ToIntFunction<? super T> mapper) {
+        return summarizingDistribution(mapper, DEFAULT_TOP);
+    }
+
+    /**
+     * Records a value
+     */
+    @Override
+    public void accept(int value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+
+        if (value >= 0) {
+            positive[bucket(value)]++;
+        } else {
+            if (negative == null) {
+                negative = new long[BUCKETS];
+            }
+            negative[bucket(~value)]++;
+        }
+
+        top.accept(value);
+    }
+
+    /**
+     * Merges another statistics into this one
+     * @param other statistics of other values, keeping as many top values
+     * @return this statistics
+     */
+    public IntDistributionStatistics combine(IntDistributionStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        mean += delta * other.count / total;
+        count = total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        for (int i = 0; i < BUCKETS; i++) {
+            positive[i] += other.positive[i];
+        }
+        if (other.negative != null) {
+            if (negative == null) {
+                negative = new long[BUCKETS];
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                negative[i] += other.negative[i];
+            }
+        }
+
+        top.combine(other.top);
+        return this;
+    }
+
+    /**
+     * @return the histogram bucket of a non-negative value
+     */
+    private static int bucket(int value) {
+        if (value < SUB_BUCKETS) {
+            return value;
+        }
+        int shift = (Integer.SIZE - 1 - Integer.numberOfLeadingZeros(value)) - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the middle of the non-negative values falling in a bucket
+     */
+    private static long bucketMiddle(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the smallest value, Integer.MAX_VALUE if none was recorded
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value, Integer.MIN_VALUE if none was recorded
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the arithmetic mean, 0 if no value was recorded
+     */
+    public double getAverage() {
+        return count > 0 ? (double) sum / count : 0.0d;
+    }
+
+    /**
+     * @return the population variance, 0 if no value was recorded
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : 0.0d;
+    }
+
+    /**
+     * @return the sample variance, dividing by count - 1, 0 below two values
+     */
+    public double getSampleVariance() {
+        return count > 1 ? m2 / (count - 1) : 0.0d;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Estimates a percentile from the histogram: exact for values in
+     * (-32, 32), within about 3% of the true value otherwise
+     * @param percentile between 0 and 100, 50 for the median
+     * @return the value below which percentile % of the values fall,
+     *         0 if no value was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of [0, 100]: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        if (negative != null) {
+            for (int i = BUCKETS - 1; i >= 0; i--) { // most negative first
+                seen += negative[i];
+                if (seen >= rank) {
+                    return clamp(~bucketMiddle(i));
+                }
+            }
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += positive[i];
+            if (seen >= rank) {
+                return clamp(bucketMiddle(i));
+            }
+        }
+        return max;
+    }
+
+    private long clamp(long value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public long getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @return the k largest values, largest first
+     */
+    public int[] getTop() {
+        return top.toSortedArray();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%s{count=%d, sum=%d, min=%d, average=%f, max=%d, stddev=%f, p50=%d, p90=%d, p99=%d, top=%s}",
+            getClass().getSimpleName(), getCount(), getSum(), getMin(), getAverage(), getMax(),
+            getStandardDeviation(), getPercentile(50), getPercentile(90), getPercentile(99),
+            Arrays.toString(getTop()));
+    }
+
+    public static void main(String[] args) {
+        System.out.println("======== Menu calories, single pass ========");
+        System.out.println(Dish.menu.stream().collect(summarizingDistribution(Dish::getCalories, 3)));
+
+        int n = 10_000_000;
+        int[] values = new Random(42).ints(n, 0, 1_000_000).toArray();
+        System.out.println("\n======== [Benchmark]: " + n + " values, one pass vs one pass per statistic ========");
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            IntDistributionStatistics stats = IntStream.of(values).parallel().boxed()
+                .collect(summarizingDistribution(Integer::intValue));
+            long single = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            IntSummaryStatistics summary = IntStream.of(values).parallel().boxed()
+                .collect(summarizingInt(Integer::intValue));
+            long counted = IntStream.of(values).parallel().boxed().collect(counting());
+            double average = IntStream.of(values).parallel().boxed().collect(averagingInt(Integer::intValue));
+            double squares = IntStream.of(values).parallel().mapToDouble(v -> (v - average) * (v - average)).sum();
+            int[] sorted = IntStream.of(values).parallel().sorted().toArray();
+            long separate = System.nanoTime() - start;
+
+            if (run == 4) {
+                System.out.println(stats);
+                System.out.printf("exact: count=%d, sum=%d, stddev=%f, p50=%d, p99=%d, top=%d%n",
+                    counted, summary.getSum(), Math.sqrt(squares / n),
+                    sorted[n / 2 - 1], sorted[(int) Math.ceil(0.99 * n) - 1], sorted[n - 1]);
+                System.out.printf("single pass: %d msecs, separate passes and a sort: %d msecs%n",
+                    single / 1_000_000, separate / 1_000_000);
+            }
+        }
+    }
+}
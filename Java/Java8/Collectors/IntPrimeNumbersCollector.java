@@ -0,0 +1,257 @@
+package Java.Java8.Collectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Primitive specialization of PrimeNumbersCollector that partitions an
+ * IntStream between primes and non primes without ever boxing a candidate.
+ *
+ * PrimeNumbersCollector works over a Stream<Integer>, so every candidate is
+ * boxed, and for every candidate isPrime() sets up a new Stream over the boxed
+ * List of primes found so far. When partitioning 10^8 numbers the boxing and
+ * the stream setup dominate the running time and the heap.
+ *
+ * The Collector interface can't be implemented by a primitive stream, since
+ * IntStream.collect() takes the three core functions as arguments instead:
+ *
+ * IntStream.collect(Supplier<R>, ObjIntConsumer<R>, BiConsumer<R,R>)
+ *
+ * So this class exposes the same supplier, accumulator and combiner methods
+ * as PrimeNumbersCollector, but typed for an int element.
+ *
+ * A - Type of Object used to Accumulate Partial results -> PrimePartition
+ * R - Type of the final result of the collect operation -> PrimePartition
+ *
+ * The PrimePartition accumulator keeps:
+ * 1) the primes found so far in a growable int[] buffer, which doubles its
+ *    capacity when full (like an ArrayList, but of ints)
+ * 2) the non primes as set bits of a BitSet, indexed by the number itself,
+ *    except the negative ones a BitSet can't index, kept aside in an int[]
+ *
+ * Example:
+ *
+ * PrimePartition partition = IntStream.rangeClosed(2, n)
+ *     .collect(collector.supplier(), collector.accumulator(), collector.combiner());
+ */
+public class IntPrimeNumbersCollector {
+
+    /**
+     * Tests only if the candidate number is divisible by the prime numbers
+     * found so far, and only with primes that are not greater than the square
+     * root of the candidate. Same optimization as PrimeNumbersCollector.isPrime()
+     * but as a plain loop over the int[] buffer, without a Stream.
+     *
+     * @param primes    buffer of Prime Numbers found so far
+     * @param size      number of primes in the buffer
+     * @param candidate Candidate number to test primality
+     * @return true if candidate number is prime, false otherwise
+     */
+    public static boolean isPrime(int[] primes, int size, int candidate) {
+        if (candidate < 2) {
+            return false;
+        }
+        int candidateRoot = (int) Math.sqrt((double) candidate);
+        for (int i = 0; i < size; i++) {
+            int p = primes[i];
+            if (p > candidateRoot) { // next prime greater than root
+                break;
+            }
+            if (candidate % p == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compact result of partitioning numbers between primes and non primes.
+     * Primes are stored in ascending order in an int[], non primes as a BitSet.
+     */
+    public static class PrimePartition {
+        private int[] primes;
+        private int size;
+        private final BitSet nonPrimes;
+        private int[] negatives = new int[0]; // non primes a BitSet can't index
+        private int negativeCount;
+
+        /**
+         * Creates an empty partition, to be filled by accept()
+         */
+        public PrimePartition() {
+            this.primes = new int[16];
+            this.nonPrimes = new BitSet();
+        }
+
+        /**
+         * Wraps an already computed partition, as produced by a sieve
+         * @param primes    ascending primes, not copied
+         * @param nonPrimes BitSet with every non prime number set, not copied
+         */
+        PrimePartition(int[] primes, BitSet nonPrimes) {
+            this.primes = primes;
+            this.size = primes.length;
+            this.nonPrimes = nonPrimes;
+        }
+
+        /**
+         * Adds a candidate to the primes or the non primes, testing it against
+         * the primes found so far
+         * @param candidate number to partition
+         */
+        public void accept(int candidate) {
+            if (candidate < 2) {
+                addNonPrime(candidate);
+            } else if (isPrime(primes, size, candidate)) {
+                if (size == primes.length) { // grow the buffer
+                    primes = Arrays.copyOf(primes, Math.max(16, size << 1));
+                }
+                primes[size++] = candidate;
+            } else {
+                nonPrimes.set(candidate);
+            }
+        }
+
+        private void addNonPrime(int candidate) {
+            if (candidate >= 0) {
+                nonPrimes.set(candidate);
+                return;
+            }
+            if (negativeCount == negatives.length) {
+                negatives = Arrays.copyOf(negatives, Math.max(4, negativeCount << 1));
+            }
+            negatives[negativeCount++] = candidate;
+        }
+
+        /**
+         * Merges another partition into this one, appending its primes to the
+         * buffer and adding its non primes to the BitSet.
+         * @param other the partition to merge into this one
+         */
+        public void combine(PrimePartition other) {
+            if (size + other.size > primes.length) {
+                primes = Arrays.copyOf(primes, Math.max(size + other.size, size << 1));
+            }
+            System.arraycopy(other.primes, 0, primes, size, other.size);
+            size += other.size;
+            nonPrimes.or(other.nonPrimes);
+            for (int i = 0; i < other.negativeCount; i++) {
+                addNonPrime(other.negatives[i]);
+            }
+        }
+
+        /**
+         * @return a copy of the primes found, trimmed to size
+         */
+        public int[] primes() {
+            return Arrays.copyOf(primes, size);
+        }
+
+        /**
+         * @return the number of primes found
+         */
+        public int primeCount() {
+            return size;
+        }
+
+        /**
+         * @return a copy of the BitSet in which every non negative non prime
+         *         number is set, the negative ones are only in toMap()
+         */
+        public BitSet nonPrimes() {
+            return (BitSet) nonPrimes.clone();
+        }
+
+        /**
+         * @return the number of non primes found
+         */
+        public int nonPrimeCount() {
+            return nonPrimes.cardinality() + negativeCount;
+        }
+
+        /**
+         * Boxes the partition into the same Map<Boolean, List<Integer>> shape
+         * returned by PartitionPrimeNumbers.partitionPrimesWithCustomCollector(),
+         * true and false key respectively. Only meant for small results.
+         * @return Map with numbers partitioned by prime and nonprime
+         */
+        public Map<Boolean, List<Integer>> toMap() {
+            Map<Boolean, List<Integer>> map = new HashMap<>();
+            List<Integer> primeList = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                primeList.add(primes[i]);
+            }
+            List<Integer> nonPrimeList = new ArrayList<>(nonPrimeCount());
+            for (int i = 0; i < negativeCount; i++) {
+                nonPrimeList.add(negatives[i]);
+            }
+            nonPrimes.stream().forEach(nonPrimeList::add);
+            map.put(true, primeList);
+            map.put(false, nonPrimeList);
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+
+    /**
+     * The Supplier Method: Making a New Result Container
+     * @return a Supplier of an empty PrimePartition
+     */
+    public Supplier<PrimePartition> supplier() {
+        return PrimePartition::new;
+    }
+
+    /**
+     * The Accumulator Method: Adding an int to a Result Container, the
+     * candidate is tested against the primes found so far.
+     * @return the function that performs the reduction operation
+     */
+    public ObjIntConsumer<PrimePartition> accumulator() {
+        return PrimePartition::accept;
+    }
+
+    /**
+     * The Combiner Method: Merging Two Result Containers
+     *
+     * Parallelism: as with PrimeNumbersCollector the algorithm is inherently
+     * sequential, because each candidate is only tested against the primes
+     * found so far. Implemented for completeness.
+     *
+     * @return a function that merges the second partition into the first
+     */
+    public BiConsumer<PrimePartition, PrimePartition> combiner() {
+        return PrimePartition::combine;
+    }
+
+    /**
+     * Partitions the numbers of an IntStream into primes and non primes
+     * @param numbers ascending stream of numbers to partition
+     * @return the compact partition of the numbers
+     */
+    public PrimePartition collect(IntStream numbers) {
+        return numbers.collect(supplier(), accumulator(), combiner());
+    }
+
+    public static void main(String[] args) {
+        int n = 100;
+        PrimePartition partition = new IntPrimeNumbersCollector()
+            .collect(IntStream.rangeClosed(2, n));
+        System.out.println("======== Partition first " + n + " numbers into prime and nonprime ========");
+        System.out.println("\n[Primes]\n " + Arrays.toString(partition.primes()));
+        System.out.println("\n[Non primes]\n " + partition.nonPrimes());
+        System.out.println("\n[Same result as Custom Collector]\n "
+            + partition.toMap().equals(PartitionPrimeNumbers.partitionPrimesWithCustomCollector(n)));
+    }
+}
@@ -0,0 +1,291 @@
+package Java.Java8.Collectors;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A partitioningBy() Collector whose downstream Collector runs only for the
+ * partitions that are read.
+ *
+ * partitioningBy(predicate, downstream) reduces both partitions while the
+ * stream is traversed, even if the caller only ever reads get(true). This
+ * collector instead:
+ *
+ * 1) accumulates the elements of each side into the chunks of
+ *    ChunkedListCollector, appending without copying, combined in O(1)
+ * 2) finishes into a lazy Map<Boolean, D> view: the first get(true) or
+ *    get(false) runs the downstream Collector over that side only, and the
+ *    result is kept for the following calls
+ *
+ * partitioningByKeeping() goes further and discards one side: its elements
+ * are tested and dropped, never stored, and the view only has the kept key.
+ * On skewed data, e.g. 95% of the elements on the side that isn't needed,
+ * only the 5% kept take any memory.
+ *
+ * Map<Boolean, List<Dish>> partitioned = menu.stream()
+ *     .collect(LazyPartitioningCollector.partitioningByKeeping(Dish::isVegetarian, true, toList()));
+ */
+public class LazyPartitioningCollector<T, A, D>
+    implements Collector<T, LazyPartitioningCollector.Sides<T>, Map<Boolean, D>> {
+
+    /**
+     * The elements of both sides, a side discarded is null
+     */
+    static final class Sides<T> {
+        private ChunkedListCollector.Chunks<T> forTrue;
+        private ChunkedListCollector.Chunks<T> forFalse;
+
+        Sides(boolean keepTrue, boolean keepFalse) {
+            forTrue = keepTrue ? new ChunkedListCollector.Chunks<>(16) : null;
+            forFalse = keepFalse ? new ChunkedListCollector.Chunks<>(16) : null;
+        }
+
+        Sides<T> combine(Sides<T> other) {
+            if (forTrue != null) {
+                forTrue = forTrue.link(other.forTrue);
+            }
+            if (forFalse != null) {
+                forFalse = forFalse.link(other.forFalse);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The Map<Boolean, D> returned, reducing a side on its first access
+     */
+    static final class LazyPartition<T, A, D> extends AbstractMap<Boolean, D> {
+        private final Collector<? super T, A, D> downstream;
+        private ChunkedListCollector.Chunks<T> forTrue;   // null once reduced, or if discarded
+        private ChunkedListCollector.Chunks<T> forFalse;
+        private final boolean hasTrue;
+        private final boolean hasFalse;
+        private D reducedTrue;
+        private D reducedFalse;
+
+        LazyPartition(Sides<T> sides, Collector<? super T, A, D> downstream) {
+            this.downstream = downstream;
+            this.forTrue = sides.forTrue;
+            this.forFalse = sides.forFalse;
+            this.hasTrue = forTrue != null;
+            this.hasFalse = forFalse != null;
+        }
+
+        private D reduce(ChunkedListCollector.Chunks<T> elements) {
+            A container = downstream.supplier().get();
+            BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+            elements.forEach(element -> accumulator.accept(container, element));
+            return downstream.finisher().apply(container);
+        }
+
+        private synchronized D side(boolean key) {
+            if (key) {
+                if (forTrue != null) {
+                    reducedTrue = reduce(forTrue);
+                    forTrue = null; // the elements can be collected now
+                }
+                return reducedTrue;
+            }
+            if (forFalse != null) {
+                reducedFalse = reduce(forFalse);
+                forFalse = null;
+            }
+            return reducedFalse;
+        }
+
+        private boolean has(boolean key) {
+            return key ? hasTrue : hasFalse;
+        }
+
+        @Override
+        public D get(Object key) {
+            return key instanceof Boolean && has((Boolean) key) ? side((Boolean) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Boolean && has((Boolean) key);
+        }
+
+        @Override
+        public int size() {
+            return (hasFalse ? 1 : 0) + (hasTrue ? 1 : 0);
+        }
+
+        /**
+         * Iterating over the entries reduces a side only when its value is read
+         */
+        @Override
+        public Set<Entry<Boolean, D>> entrySet() {
+            return new AbstractSet<Entry<Boolean, D>>() {
+                @Override
+                public Iterator<Entry<Boolean, D>> iterator() {
+                    return new Iterator<Entry<Boolean, D>>() {
+                        private int next = hasFalse ? 0 : hasTrue ? 1 : 2; // false first, as partitioningBy()
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < 2;
+                        }
+
+                        @Override
+                        public Entry<Boolean, D> next() {
+                            if (next >= 2) {
+                                throw new NoSuchElementException();
+                            }
+                            boolean key = next == 1;
+                            next = key || !hasTrue ? 2 : 1;
+                            return new SimpleImmutableEntry<Boolean, D>(key, null) {
+                                @Override
+                                public D getValue() {
+                                    return side(key);
+                                }
+                            };
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return LazyPartition.this.size();
+                }
+            };
+        }
+    }
+
+    private final Predicate<? super T> predicate;
+    private final Collector<? super T, A, D> downstream;
+    private final boolean keepTrue;
+    private final boolean keepFalse;
+
+    /**
+     * @param predicate  the partitioning function
+     * @param downstream Collector reducing a side when it's first read
+     * @param keepTrue   false to discard the elements the predicate accepts
+     * @param keepFalse  false to discard the elements the predicate rejects
+     */
+    public LazyPartitioningCollector(Predicate<? super T> predicate, Collector<? super T, A, D> downstream,
+                                     boolean keepTrue, boolean keepFalse) {
+        this.predicate = predicate;
+        this.downstream = downstream;
+        this.keepTrue = keepTrue;
+        this.keepFalse = keepFalse;
+    }
+
+    /**
+     * Partitions into Lists built on first access, like partitioningBy(predicate)
+     */
+    public static <T> Collector<T, ?, Map<Boolean, List<T>>> partitioningByLazily(Predicate<? super T> predicate) {
+        return new LazyPartitioningCollector<>(predicate, Collectors.toList(), true, true);
+    }
+
+    /**
+     * Partitions reducing each side with the downstream Collector on its
+     * first access, like partitioningBy(predicate, downstream)
+     */
+    public static <T, A, D> Collector<T, ?, Map<Boolean, D>>
+        partitioningByLazily(Predicate<? super T> predicate, Collector<? super T, A, D> downstream) {
+        return new LazyPartitioningCollector<>(predicate, downstream, true, true);
+    }
+
+    /**
+     * Keeps a single side of the partition, the elements of the other side
+     * are never stored and its key is absent from the Map
+     * @param keptSide true to keep the elements the predicate accepts, false
+     *                 to keep the ones it rejects
+     */
+    public static <T, A, D> Collector<T, ?, Map<Boolean, D>>
+        partitioningByKeeping(Predicate<? super T> predicate, boolean keptSide,
+                              Collector<? super T, A, D> downstream) {
+        return new LazyPartitioningCollector<>(predicate, downstream, keptSide, !keptSide);
+    }
+
+    @Override
+    public Supplier<Sides<T>> supplier() {
+        return () -> new Sides<>(keepTrue, keepFalse);
+    }
+
+    @Override
+    public BiConsumer<Sides<T>, T> accumulator() {
+        return (sides, element) -> {
+            ChunkedListCollector.Chunks<T> side = predicate.test(element) ? sides.forTrue : sides.forFalse;
+            if (side != null) {
+                side.add(element);
+            }
+        };
+    }
+
+    @Override
+    public BinaryOperator<Sides<T>> combiner() {
+        return Sides::combine;
+    }
+
+    @Override
+    public Function<Sides<T>, Map<Boolean, D>> finisher() {
+        return sides -> new LazyPartition<>(sides, downstream);
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    public static void main(String[] args) {
+        System.out.println("======== Lazy partitions of the menu ========");
+        Map<Boolean, List<Dish>> partitioned = Dish.menu.stream().collect(partitioningByLazily(Dish::isVegetarian));
+        System.out.println("vegetarian: " + partitioned.get(true));
+        System.out.println("both: " + partitioned);
+        System.out.println("vegetarian only: " + Dish.menu.stream()
+            .collect(partitioningByKeeping(Dish::isVegetarian, true, Collectors.counting())));
+
+        int n = 10_000_000;
+        System.out.println("\n======== [Benchmark]: the 5% multiples of 20 among " + n + " Integers ========");
+        for (int run = 0; run < 5; run++) {
+            System.gc();
+            long before = usedMemory();
+            long start = System.nanoTime();
+            Map<Boolean, List<Integer>> eager = IntStream.range(0, n).boxed()
+                .collect(Collectors.partitioningBy(i -> i % 20 == 0));
+            int eagerSize = eager.get(true).size();
+            long eagerTime = System.nanoTime() - start;
+            long eagerMemory = usedMemory() - before;
+            eager = null;
+
+            System.gc();
+            before = usedMemory();
+            start = System.nanoTime();
+            Map<Boolean, List<Integer>> kept = IntStream.range(0, n).boxed()
+                .collect(partitioningByKeeping(i -> i % 20 == 0, true, Collectors.toList()));
+            int keptSize = kept.get(true).size();
+            long keptTime = System.nanoTime() - start;
+            long keptMemory = usedMemory() - before;
+
+            if (run == 4) {
+                System.out.printf("partitioningBy(): %d elements, %d msecs, %d MB retained%n",
+                    eagerSize, eagerTime / 1_000_000, eagerMemory >> 20);
+                System.out.printf("partitioningByKeeping(): %d elements, %d msecs, %d MB retained%n",
+                    keptSize, keptTime / 1_000_000, keptMemory >> 20);
+            }
+            kept = null;
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,210 @@
+package Java.Java8.Collectors;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * A multilevel groupingBy() Collector for parallel streams, taking a list of
+ * classification functions instead of nesting a groupingBy() per level.
+ *
+ * groupingBy(f1, groupingBy(f2)) builds a Map of Maps for every split of a
+ * parallel stream, and the combiner then merges them level by level, which
+ * dominates wide groupings. This collector instead keeps one flat Map for the
+ * whole stream:
+ *
+ * 1) every element is classified by all the functions at once into a
+ *    CompositeKey (k1, k2, ..., kn), whose hash is computed only once
+ * 2) all threads accumulate into a single ConcurrentHashMap from composite key
+ *    to the downstream container (CONCURRENT), so there's nothing to merge.
+ *    If the downstream Collector isn't CONCURRENT itself its container is
+ *    locked while an element is added, like groupingByConcurrent() does;
+ *    countingByAll() uses a LongAdder per key, which needs no lock at all.
+ * 3) the finisher expands the flat Map into the nested Map view
+ *    {k1 -> {k2 -> ... {kn -> downstream result}}} only once, at the end.
+ *
+ * The collector is UNORDERED: as with groupingByConcurrent(), elements of the
+ * same group can be accumulated in any order.
+ *
+ * Map<Dish.Type, Map<CaloricLevel, List<Dish>>> dishes = menu.parallelStream()
+ *     .collect(MultiLevelGroupingCollector.groupingByTwoLevels(Dish::getType, caloricLevel, toList()));
+ */
+public class MultiLevelGroupingCollector<T, A, D>
+    implements Collector<T, ConcurrentHashMap<MultiLevelGroupingCollector.CompositeKey, A>, Map<Object, Object>> {
+
+    /**
+     * Immutable key made of the keys of every level, hashed once
+     */
+    static final class CompositeKey {
+        private final Object[] keys;
+        private final int hash;
+
+        CompositeKey(Object[] keys) {
+            this.keys = keys;
+            this.hash = Arrays.hashCode(keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CompositeKey
+                && hash == ((CompositeKey) other).hash
+                && Arrays.equals(keys, ((CompositeKey) other).keys);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(keys);
+        }
+    }
+
+    private final List<Function<? super T, ?>> classifiers;
+    private final Collector<? super T, A, D> downstream;
+    private final boolean lockContainers;
+
+    /**
+     * @param classifiers classification functions, from the outermost level
+     * @param downstream  Collector reducing the elements of each innermost group
+     */
+    public MultiLevelGroupingCollector(List<? extends Function<? super T, ?>> classifiers,
+                                       Collector<? super T, A, D> downstream) {
+        if (classifiers.isEmpty()) {
+            throw new IllegalArgumentException("At least one classifier is needed");
+        }
+        this.classifiers = List.copyOf(classifiers);
+        this.downstream = downstream;
+        this.lockContainers = !downstream.characteristics().contains(Characteristics.CONCURRENT);
+    }
+
+    /**
+     * Groups elements by several levels of keys into Lists
+     */
+    public static <T> MultiLevelGroupingCollector<T, ?, List<T>>
+        groupingByAll(List<? extends Function<? super T, ?>> classifiers) {
+        return new MultiLevelGroupingCollector<>(classifiers, Collectors.toList());
+    }
+
+    /**
+     * Groups elements by several levels of keys, reducing each innermost group
+     * with a downstream Collector
+     */
+    public static <T, A, D> MultiLevelGroupingCollector<T, A, D>
+        groupingByAll(List<? extends Function<? super T, ?>> classifiers, Collector<? super T, A, D> downstream) {
+        return new MultiLevelGroupingCollector<>(classifiers, downstream);
+    }
+
+    /**
+     * Counts the elements of each innermost group with a LongAdder, so the
+     * accumulation never takes a lock
+     */
+    public static <T> MultiLevelGroupingCollector<T, LongAdder, Long>
+        countingByAll(List<? extends Function<? super T, ?>> classifiers) {
+        Collector<T, LongAdder, Long> counting = Collector.of(
+            LongAdder::new,
+            (adder, element) -> adder.increment(),
+            (left, right) -> {
+                left.add(right.sum());
+                return left;
+            },
+            LongAdder::sum,
+            Characteristics.CONCURRENT, Characteristics.UNORDERED);
+        return new MultiLevelGroupingCollector<>(classifiers, counting);
+    }
+
+    /**
+     * Typed two-level grouping, same result as
+     * groupingBy(outer, groupingBy(inner, downstream))
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, K1, K2, A, D> Collector<T, ?, Map<K1, Map<K2, D>>>
+        groupingByTwoLevels(Function<? super T, ? extends K1> outer, Function<? super T, ? extends K2> inner,
+                            Collector<? super T, A, D> downstream) {
+        List<Function<? super T, ?>> classifiers = List.of(outer, inner);
+        return Collectors.collectingAndThen(
+            new MultiLevelGroupingCollector<>(classifiers, downstream),
+            nested -> (Map<K1, Map<K2, D>>) (Map<?, ?>) nested);
+    }
+
+    @Override
+    public Supplier<ConcurrentHashMap<CompositeKey, A>> supplier() {
+        return ConcurrentHashMap::new;
+    }
+
+    @Override
+    public BiConsumer<ConcurrentHashMap<CompositeKey, A>, T> accumulator() {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        return (groups, element) -> {
+            Object[] keys = new Object[classifiers.size()];
+            for (int level = 0; level < keys.length; level++) {
+                keys[level] = classifiers.get(level).apply(element);
+                if (keys[level] == null) {
+                    throw new NullPointerException("element cannot be mapped to a null key");
+                }
+            }
+            A container = groups.computeIfAbsent(new CompositeKey(keys), key -> downstreamSupplier.get());
+            if (lockContainers) {
+                synchronized (container) {
+                    downstreamAccumulator.accept(container, element);
+                }
+            } else {
+                downstreamAccumulator.accept(container, element);
+            }
+        };
+    }
+
+    /**
+     * Only used if the stream isn't parallel after all, or runs in parallel
+     * with separate containers: merges the flat Maps key by key
+     */
+    @Override
+    public BinaryOperator<ConcurrentHashMap<CompositeKey, A>> combiner() {
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        return (left, right) -> {
+            right.forEach((key, container) -> left.merge(key, container, downstreamCombiner));
+            return left;
+        };
+    }
+
+    /**
+     * Expands the flat Map into nested HashMaps, one level per classifier
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Function<ConcurrentHashMap<CompositeKey, A>, Map<Object, Object>> finisher() {
+        Function<A, D> downstreamFinisher = downstream.finisher();
+        return groups -> {
+            Map<Object, Object> root = new HashMap<>();
+            groups.forEach((composite, container) -> {
+                Map<Object, Object> level = root;
+                Object[] keys = composite.keys;
+                for (int i = 0; i < keys.length - 1; i++) {
+                    level = (Map<Object, Object>) level.computeIfAbsent(keys[i], key -> new HashMap<>());
+                }
+                level.put(keys[keys.length - 1], downstreamFinisher.apply(container));
+            });
+            return root;
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.unmodifiableSet(EnumSet.of(Characteristics.CONCURRENT, Characteristics.UNORDERED));
+    }
+}
@@ -0,0 +1,134 @@
+package Java.Java8.Collectors;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+import static java.util.stream.Collector.Characteristics.IDENTITY_FINISH;
+
+/**
+ * Custom Collector that partitions numbers between primes and non primes, and
+ * unlike PrimeNumbersCollector works correctly under parallel().
+ *
+ * PrimeNumbersCollector tests each candidate against the primes found so far
+ * in its own accumulator. Under parallel() every split starts from an empty
+ * accumulator, so a split starting at 1000 would find no primes to divide by
+ * and report every one of its numbers as prime: the algorithm depends on the
+ * encounter order, and its combiner is never meant to be invoked.
+ *
+ * This collector is told up front the largest number it will see, and builds
+ * once the table of base primes up to sqrt(max) with SegmentedSieve. Every
+ * composite number up to max has a factor among the base primes, so each
+ * candidate can be tested on its own, in any split, in any order:
+ *
+ * 1) supplier    - a fresh Map with an empty list of primes and non primes
+ * 2) accumulator - tests the candidate against the shared base primes only
+ * 3) combiner    - appends the partial partitions of the right split to the
+ *                  ones of the left split, so the lists keep the stream order
+ * 4) finisher    - identity, the accumulator is already the result
+ *
+ * Characteristics: IDENTITY_FINISH. Not CONCURRENT, because each split
+ * accumulates into its own ArrayLists which aren't thread-safe, and not
+ * UNORDERED, because the combiner preserves the encounter order. Neither is
+ * needed for a parallel reduction: the stream splits the source, accumulates
+ * each split on a ForkJoinPool worker and merges them with the combiner.
+ *
+ * List<Integer> primes = IntStream.rangeClosed(2, n).boxed().parallel()
+ *     .collect(new ParallelPrimeNumbersCollector(n)).get(true);
+ */
+public class ParallelPrimeNumbersCollector
+    implements Collector<Integer, Map<Boolean, List<Integer>>, Map<Boolean, List<Integer>>> {
+
+    private final int max;
+    private final int[] basePrimes;
+
+    /**
+     * @param max the largest number of the stream to partition
+     */
+    public ParallelPrimeNumbersCollector(int max) {
+        this.max = max;
+        this.basePrimes = SegmentedSieve.basePrimes((int) Math.sqrt((double) max));
+    }
+
+    /**
+     * Tests the candidate against the base primes not greater than its
+     * square root
+     * @param candidate Candidate number to test primality, not greater than max
+     * @return true if candidate number is prime, false otherwise
+     */
+    public boolean isPrime(int candidate) {
+        if (candidate > max) {
+            throw new IllegalArgumentException(candidate + " is greater than " + max);
+        }
+        return IntPrimeNumbersCollector.isPrime(basePrimes, basePrimes.length, candidate);
+    }
+
+    /**
+     * The Supplier Method: Making a New Result Container, once per split
+     * @return a Supplier of an empty accumulator
+     */
+    @Override
+    public Supplier<Map<Boolean, List<Integer>>> supplier() {
+        return () -> {
+            Map<Boolean, List<Integer>> acc = new HashMap<>();
+            acc.put(true, new ArrayList<Integer>());
+            acc.put(false, new ArrayList<Integer>());
+            return acc;
+        };
+    }
+
+    /**
+     * The Accumulator Method: Adding an Element to a Result Container
+     * Only reads the shared base primes, never the partial result, so it
+     * doesn't matter which split the candidate falls in.
+     * @return the function that performs the reduction operation
+     */
+    @Override
+    public BiConsumer<Map<Boolean, List<Integer>>, Integer> accumulator() {
+        return (Map<Boolean, List<Integer>> acc, Integer candidate) ->
+            acc.get(isPrime(candidate)).add(candidate);
+    }
+
+    /**
+     * The Finisher Method: the accumulator is already the final result
+     * @return the identity function
+     */
+    @Override
+    public Function<Map<Boolean, List<Integer>>, Map<Boolean, List<Integer>>> finisher() {
+        return Function.identity();
+    }
+
+    /**
+     * The Combiner Method: Merging Two Result Containers
+     * Invoked for real under parallel(): map1 holds the partition of the left
+     * split and map2 the one of the right split, so appending map2's lists
+     * to map1's keeps the numbers in stream order.
+     * @return a function that merges the second partition into the first
+     */
+    @Override
+    public BinaryOperator<Map<Boolean, List<Integer>>> combiner() {
+        return (Map<Boolean, List<Integer>> map1, Map<Boolean, List<Integer>> map2) -> {
+            map1.get(true).addAll(map2.get(true));
+            map1.get(false).addAll(map2.get(false));
+            return map1;
+        };
+    }
+
+    /**
+     * The Characteristics Method
+     * IDENTITY_FINISH only, see the class documentation.
+     */
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.unmodifiableSet(EnumSet.of(IDENTITY_FINISH));
+    }
+}
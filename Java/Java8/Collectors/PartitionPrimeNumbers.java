@@ -7,6 +7,7 @@ import java.util.stream.IntStream;
 import static java.util.stream.Collectors.partitioningBy;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 
 /**
@@ -29,6 +30,20 @@ import java.util.HashMap;
  * the first n natural numbers between prime and nonprimes without making a
  * class. Instead use the overloaded version of the collect() method, that
  * takes the core logic of PrimeNumbersCollector as arguments. 
+ * 7. Obtain the same partition as 5 over an IntStream without boxing, using
+ * IntPrimeNumbersCollector which keeps primes in an int[] and non primes in
+ * a BitSet.
+ * 8. Replace trial division with a Segmented Sieve of Eratosthenes, sieving
+ * cache-sized segments one after the other, or in parallel on a ForkJoinPool.
+ * 9. Answer repeated, overlapping partitions from a PrimeTable shared across
+ * calls, which only sieves the numbers it hasn't seen yet.
+ * 10. Use a Custom Collector that works under parallel(), by testing every
+ * candidate against a shared table of base primes up to sqrt(n) instead of
+ * the primes found so far.
+ * 11. Keep the partition as a PrimeBitmap, one bit per odd number instead of
+ * a boxed Integer per number, read through lazy List<Integer> views.
+ * 12. When only the number of primes is needed, count them with the 
+ * Meissel-Lehmer method of PrimeCounting instead of partitioning.
  * 
  * ================================= Methods =================================
  * -collect() - a terminal stream operation that combines all elements of a 
@@ -145,6 +160,105 @@ public class PartitionPrimeNumbers {
             );
     }
 
+    /**
+     * 7. Obtain the same partition as 5 without boxing any candidate, by 
+     * collecting the IntStream directly with IntPrimeNumbersCollector. Primes
+     * are kept in a growable int[] and non primes in a BitSet, a fraction of
+     * the heap used by Map<Boolean, List<Integer>>.
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return compact partition of the numbers into primes and non primes
+     */
+    public static IntPrimeNumbersCollector.PrimePartition 
+        partitionPrimesWithPrimitiveCollector(int n) {
+        return new IntPrimeNumbersCollector().collect(IntStream.rangeClosed(2, n));
+    }
+
+    /**
+     * 8. Partition the first n natural numbers with a Segmented Sieve of 
+     * Eratosthenes instead of trial division, O(n log log n) instead of 
+     * O(n * sqrt(n)). Use toMap() on the result for the Map<Boolean, List<Integer>>
+     * contract of the other strategies.
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return compact partition of the numbers into primes and non primes
+     */
+    public static IntPrimeNumbersCollector.PrimePartition partitionPrimesWithSieve(int n) {
+        return SegmentedSieve.sieve(n);
+    }
+
+    /**
+     * 8. Same as above, but the segments of the sieve are processed in 
+     * parallel on the common ForkJoinPool, since unlike PrimeNumbersCollector
+     * a segment only depends on the base primes up to sqrt(n).
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return compact partition of the numbers into primes and non primes
+     */
+    public static IntPrimeNumbersCollector.PrimePartition partitionPrimesWithParallelSieve(int n) {
+        return SegmentedSieve.parallelSieve(n);
+    }
+
+    /**
+     * 9. Partition the first n natural numbers using the primes cached by the
+     * shared PrimeTable. Only the part of [2, n] beyond what earlier calls
+     * already asked for gets sieved.
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return compact partition of the numbers into primes and non primes
+     */
+    public static IntPrimeNumbersCollector.PrimePartition partitionPrimesWithCache(int n) {
+        int[] primes = PrimeTable.shared().primesUpTo(n);
+        BitSet nonPrimes = new BitSet();
+        if (n >= 2) {
+            nonPrimes.set(2, n);
+            nonPrimes.set(n); // n + 1 overflows for Integer.MAX_VALUE
+            for (int p : primes) {
+                nonPrimes.clear(p);
+            }
+        }
+        return new IntPrimeNumbersCollector.PrimePartition(primes, nonPrimes);
+    }
+
+    /**
+     * 10. Partition the first n natural numbers in parallel with 
+     * ParallelPrimeNumbersCollector. Each split of the stream is accumulated
+     * on its own against the base primes up to sqrt(n), and the combiner
+     * merges the partial partitions in order.
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return Map with numbers partition by prime and nonprime, true and false key respectively
+     */
+    public static Map<Boolean, List<Integer>> partitionPrimesInParallel(int n) {
+        return IntStream.rangeClosed(2, n).boxed()
+                        .parallel()
+                        .collect(new ParallelPrimeNumbersCollector(n));
+    }
+
+    /**
+     * 11. Partition the first n natural numbers into an odd-only PrimeBitmap.
+     * Its primes() and nonPrimes() views look like get(true) and get(false)
+     * of the Map, but the whole int range fits in about 128 MB.
+     * 
+     * @param n the first n natural numbers to partition by
+     * @return bitmap of the primality of the numbers from 2 to n
+     */
+    public static PrimeBitmap partitionPrimesAsBitmap(int n) {
+        return PrimeBitmap.sieve(n);
+    }
+
+    /**
+     * 12. Count the primes not greater than x, the same as 
+     * partitionPrimes(x).get(true).size() but without enumerating any prime,
+     * see PrimeCounting.
+     * 
+     * @param x the last number, inclusive
+     * @return pi(x), the number of primes not greater than x
+     */
+    public static long primeCount(long x) {
+        return PrimeCounting.primeCount(x);
+    }
+
     public static void main(String[] args) {
         int n = 100;
         System.out.print("======== Partition first ");
@@ -152,5 +266,11 @@ public class PartitionPrimeNumbers {
         System.out.println("\n[Numbers partitioned in prime and non-prime]\n\n " + partitionPrimes(n));
         System.out.println("\n[Numbers partitioned in prime and non-prime" + 
             " with Custom Collector]\n\n " + partitionPrimesWithCustomCollector(n));
+        System.out.println("\n[Numbers partitioned in prime and non-prime" + 
+            " with Primitive Collector]\n\n " + partitionPrimesWithPrimitiveCollector(n));
+        System.out.println("\n[Numbers partitioned in prime and non-prime" + 
+            " with Parallel Segmented Sieve]\n\n " + partitionPrimesWithParallelSieve(n));
+        System.out.println("\n[Numbers partitioned in prime and non-prime" + 
+            " with Parallel Collector]\n\n " + partitionPrimesInParallel(n));
     }
 }
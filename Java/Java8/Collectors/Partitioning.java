@@ -14,6 +14,9 @@ import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.maxBy;
 import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.Comparator.comparingInt;
+import static Java.Java8.Collectors.TopKCollector.topKByInt;
+import static Java.Java8.Collectors.LazyPartitioningCollector.partitioningByKeeping;
+import static Java.Java8.Collectors.LazyPartitioningCollector.partitioningByLazily;
 
 /**
  * Partitioning is a special case of grouping: having a predicate called a
@@ -37,6 +40,11 @@ import static java.util.Comparator.comparingInt;
  * group vegetarian and nonvegetarian dishes by type, producing a two-level Map
  * 4. Reuse earlier code that finds most caloric dish, and find the most 
  * caloric dish between vegetarian and nonvegetarian dishes
+ * 5. Find the 2 most caloric dishes of vegetarian and nonvegetarian dishes
+ * with TopKCollector
+ * 6. Partition lazily: group the vegetarian dishes by type only when they
+ * are read, with LazyPartitioningCollector
+ * 7. Keep only the vegetarian side, never storing the other dishes
  * 
  * ================================= Methods =================================
  * -collect() - a terminal stream operation that combines all elements of a 
@@ -98,6 +106,41 @@ public class Partitioning {
                     Optional::get)));
     }
 
+    /**
+     * 5. Same as 4. for the 2 most caloric dishes of each partition: topKByInt()
+     * keeps a heap of 2 dishes per partition, ranked by their int calories
+     * 
+     * @return the 2 most caloric vegetarian and nonvegetarian dishes, most
+     * caloric first
+     */
+    private static Map<Boolean, List<Dish>> topCaloricPartitionedByVegetarian() {
+        return menu.stream().collect(
+            partitioningBy(Dish::isVegetarian, topKByInt(2, Dish::getCalories)));
+    }
+
+    /**
+     * 6. Same as 3., but the dishes of each side are only grouped by type
+     * when that side is first read: reading get(true) alone never groups
+     * the nonvegetarian dishes
+     * 
+     * @return a lazy Two-Level Map that partitions the menu by vegetarian or
+     * not, and grouped by Dish Type
+     */
+    private static Map<Boolean, Map<Dish.Type, List<Dish>>> vegetarianDishesByTypeLazily() {
+        return menu.stream().collect(partitioningByLazily(Dish::isVegetarian, groupingBy(Dish::getType)));
+    }
+
+    /**
+     * 7. Same as 1., when only the vegetarian dishes are needed: the
+     * nonvegetarian ones are tested and dropped, never stored, and the Map
+     * only has the true key
+     * 
+     * @return Map with the key True only, and the vegetarian dishes as value
+     */
+    private static Map<Boolean, List<Dish>> keepVegetarianOnly() {
+        return menu.stream().collect(partitioningByKeeping(Dish::isVegetarian, true, toList()));
+    }
+
     public static void main(String[] args) {
         showMenu();
         System.out.println("\n======== Partition Menu by Vegetarian Dishes ========");
@@ -111,6 +154,14 @@ public class Partitioning {
   
         System.out.println("\n======== Find most Caloric Dish between Partitioned Menu ========");
         System.out.println("[Most caloric dishes by vegetarian]\n " + mostCaloricPartitionedByVegetarian());
+
+        System.out.println("\n======== Find 2 most Caloric Dishes between Partitioned Menu ========");
+        System.out.println("[Top caloric dishes by vegetarian]\n " + topCaloricPartitionedByVegetarian());
+
+        System.out.println("\n======== Lazy Partitions ========");
+        System.out.println("[Vegetarian Dishes by type, only the vegetarian side grouped]\n "
+            + vegetarianDishesByTypeLazily().get(true));
+        System.out.println("[Vegetarian side only]\n " + keepVegetarianOnly());
     }
 
     // Prints the available menu and respective calories
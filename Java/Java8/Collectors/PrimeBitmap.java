@@ -0,0 +1,338 @@
+package Java.Java8.Collectors;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Compact partition of the numbers from 2 to n between primes and non primes,
+ * one bit per odd number.
+ *
+ * The Map<Boolean, List<Integer>> returned by partitionPrimes() costs around
+ * 16 to 20 bytes per number once every Integer is boxed and referenced from a
+ * list. Since 2 is the only even prime, the primality of every number up to n
+ * is known from the odd numbers alone:
+ *
+ * 1) bit i of the long[] is set iff the odd number 2i + 1 is prime, so the
+ *    2^31 numbers of the whole int range take 2^30 bits = 128 MB
+ * 2) a rank index holds the number of primes before every block of
+ *    BLOCK_WORDS words, 4 bytes per 512 odd numbers, so primeCount(x) and
+ *    nthPrime(k) don't have to count the bits from the start
+ * 3) primes() and nonPrimes() are lazy List<Integer> views that look like the
+ *    two partitions of the Map, but box an Integer only when it's read
+ *
+ * The bitmap is built with an odd-only Segmented Sieve whose segments are
+ * sieved in parallel, as in SegmentedSieve.
+ */
+public class PrimeBitmap {
+
+    /** Odd numbers per segment of the sieve, 32 KB of bits */
+    private static final int SEGMENT_BITS = 1 << 18;
+
+    /** Words per block of the rank index */
+    private static final int BLOCK_WORDS = 8;
+
+    private final int n;
+    private final long[] bits;
+    private final int[] rank;
+    private final int oddPrimes;
+
+    private PrimeBitmap(int n, long[] bits) {
+        this.n = n;
+        this.bits = bits;
+        this.rank = new int[(bits.length + BLOCK_WORDS - 1) / BLOCK_WORDS + 1];
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            if (w % BLOCK_WORDS == 0) {
+                rank[w / BLOCK_WORDS] = count;
+            }
+            count += Long.bitCount(bits[w]);
+        }
+        rank[rank.length - 1] = count;
+        this.oddPrimes = count;
+    }
+
+    /**
+     * Sieves the odd numbers up to n into a bitmap
+     * @param n the last number, inclusive
+     * @return the primality of every number from 2 to n
+     */
+    public static PrimeBitmap sieve(int n) {
+        long odds = n < 1 ? 0 : ((long) n + 1) >>> 1; // odd numbers 1, 3, ..., up to n
+        long[] bits = new long[(int) ((odds + 63) >>> 6)];
+        int[] basePrimes = SegmentedSieve.basePrimes((int) Math.sqrt((double) n));
+        int segments = (int) ((odds + SEGMENT_BITS - 1) / SEGMENT_BITS);
+
+        // Cross out the odd composites, segments are word aligned so they can run in parallel
+        IntStream.range(0, segments).parallel().forEach(s -> {
+            long lo = (long) s * SEGMENT_BITS;              // first index of the segment
+            long hi = Math.min(lo + SEGMENT_BITS, odds);    // last index, exclusive
+            for (int p : basePrimes) {
+                if (p == 2) {
+                    continue;
+                }
+                long square = (long) p * p;
+                if ((square - 1) >>> 1 >= hi) {
+                    break;
+                }
+                // first odd multiple of p not below the segment, nor below p^2
+                long first = Math.max(square, ((2 * lo + 1 + p - 1) / p) * p);
+                if ((first & 1) == 0) {
+                    first += p;
+                }
+                for (long i = (first - 1) >>> 1; i < hi; i += p) { // next odd multiple is 2p further
+                    bits[(int) (i >>> 6)] |= 1L << i;
+                }
+            }
+        });
+
+        // Flip the composites into primes, 1 is not prime, and clear the tail
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] = ~bits[w];
+        }
+        if (bits.length > 0) {
+            bits[0] &= ~1L;
+            if ((odds & 63) != 0) {
+                bits[bits.length - 1] &= (1L << odds) - 1;
+            }
+        }
+        return new PrimeBitmap(n, bits);
+    }
+
+    /**
+     * @return the last number of the partition
+     */
+    public int limit() {
+        return n;
+    }
+
+    /**
+     * @param candidate number to check primality, up to limit()
+     * @return true if candidate number is prime, false otherwise
+     */
+    public boolean isPrime(int candidate) {
+        if (candidate > n) {
+            throw new IllegalArgumentException(candidate + " is greater than " + n);
+        }
+        if (candidate < 2) {
+            return false;
+        }
+        if ((candidate & 1) == 0) {
+            return candidate == 2;
+        }
+        int i = candidate >>> 1;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * @return the number of primes from 2 to limit()
+     */
+    public int primeCount() {
+        return n >= 2 ? oddPrimes + 1 : 0;
+    }
+
+    /**
+     * Counts the primes not greater than x with the rank index
+     * @param x the last number, inclusive, up to limit()
+     * @return pi(x), the number of primes not greater than x
+     */
+    public int primeCount(int x) {
+        if (x < 2) {
+            return 0;
+        }
+        if (x >= n) {
+            return primeCount();
+        }
+        int odds = (x + 1) >>> 1; // bits 0 to odds - 1 are the odd numbers up to x
+        int w = odds >>> 6;
+        int count = rank[w / BLOCK_WORDS];
+        for (int i = (w / BLOCK_WORDS) * BLOCK_WORDS; i < w; i++) {
+            count += Long.bitCount(bits[i]);
+        }
+        if ((odds & 63) != 0) {
+            count += Long.bitCount(bits[w] & ((1L << odds) - 1));
+        }
+        return count + 1; // plus 2
+    }
+
+    /**
+     * Selects the k-th prime with the rank index: a binary search for the
+     * block, then a scan of at most BLOCK_WORDS words.
+     * @param k the position of the prime, 1 for 2, 2 for 3, and so on
+     * @return the k-th prime
+     */
+    public int nthPrime(int k) {
+        if (k < 1 || k > primeCount()) {
+            throw new IndexOutOfBoundsException("No prime number " + k + " up to " + n);
+        }
+        if (k == 1) {
+            return 2;
+        }
+        int target = k - 1; // 1-based position among the odd primes
+        // last block with fewer than target primes before it
+        int lo = 0, hi = rank.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rank[mid] < target) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int remaining = target - rank[lo];
+        int w = lo * BLOCK_WORDS;
+        while (Long.bitCount(bits[w]) < remaining) {
+            remaining -= Long.bitCount(bits[w]);
+            w++;
+        }
+        long word = bits[w];
+        for (int i = 1; i < remaining; i++) {
+            word &= word - 1; // drop the lowest primes of the word
+        }
+        int index = (w << 6) + Long.numberOfTrailingZeros(word);
+        return 2 * index + 1;
+    }
+
+    /**
+     * @return a lazy view of the primes, like the true partition
+     */
+    public List<Integer> primes() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return nthPrime(index + 1);
+            }
+
+            @Override
+            public int size() {
+                return primeCount();
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = n >= 2 ? 2 : -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next > 0;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = next;
+                        next = nextPrime(current);
+                        return current;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return the smallest prime greater than p up to limit(), or -1
+     */
+    private int nextPrime(int p) {
+        long i = (p >>> 1) + (p & 1); // index of the next odd number after p
+        int w = (int) (i >>> 6);
+        if (w >= bits.length) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << i);
+        while (word == 0) {
+            if (++w >= bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return 2 * ((w << 6) + Long.numberOfTrailingZeros(word)) + 1;
+    }
+
+    /**
+     * @return a lazy view of the non primes from 2 to limit(), like the false
+     * partition. get() binary searches the number with primeCount(x).
+     */
+    public List<Integer> nonPrimes() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                // smallest x with x - 1 - pi(x) = index + 1 non primes in [2, x]
+                int lo = 2, hi = n;
+                while (lo < hi) {
+                    int mid = lo + ((hi - lo) >>> 1);
+                    if (mid - 1 - primeCount(mid) > index) {
+                        hi = mid;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+                return lo;
+            }
+
+            @Override
+            public int size() {
+                return n >= 2 ? n - 1 - primeCount() : 0;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private long next = nextNonPrime(2);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next <= n;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next > n) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = (int) next;
+                        next = nextNonPrime(next + 1);
+                        return current;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return the smallest non prime not smaller than x, maybe past limit()
+     */
+    private long nextNonPrime(long x) {
+        while (x <= n && isPrime((int) x)) {
+            x++;
+        }
+        return x;
+    }
+
+    @Override
+    public String toString() {
+        return "{false=" + nonPrimes() + ", true=" + primes() + "}";
+    }
+
+    public static void main(String[] args) {
+        int n = 100;
+        PrimeBitmap bitmap = sieve(n);
+        System.out.println("======== Partition first " + n + " numbers into an odd-only bitmap ========");
+        System.out.println("\n[Numbers partitioned in prime and non-prime]\n " + bitmap);
+        System.out.println("\n[Same as Custom Collector]\n "
+            + bitmap.primes().equals(PartitionPrimeNumbers.partitionPrimesWithCustomCollector(n).get(true)));
+
+        n = 1_000_000_000;
+        bitmap = sieve(n);
+        System.out.println("\n[Primes up to " + n + "]\n " + bitmap.primeCount()
+            + " in " + (bitmap.bits.length * 8L + bitmap.rank.length * 4L) / (1024 * 1024) + " MB");
+        System.out.println("\n[The 50_000_000th prime]\n " + bitmap.nthPrime(50_000_000));
+    }
+}
@@ -1,83 +1,231 @@
 package Java.Java8.Collectors;
 
-import java.util.function.Consumer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
- * Class that tests the performance of Partitioning Prime Number Collector 
- * compared to using collector created with partitioningBy() factory 
- * method. 
- * 
- * A more scientific benchmarking approach would be to use Java Microbenchmark
- * Harness (JMH) but for this case the results provided by this small 
- * benchmarking class are accurate enough. 
- * 
- * This class partitions the first million natural numbers into primes and 
- * nonprimes, invoking the method using the collector created with 
- * partitioningBy() factory method 10 times and registering the fastest 
- * execution. 
- * 
- * Then we replace partitionPrimes with partitionPrimesWithCustomCollector
- * in the harness, in order to test the performances of the custom collector
- * developed. Then calculate the performance increase and output the results.
- * 
+ * Class that benchmarks the Partitioning Prime Number strategies of
+ * PartitionPrimeNumbers, in the style of the Java Microbenchmark Harness (JMH).
+ *
+ * The first version of this harness ran each partitioner 10 times in a
+ * System.nanoTime() loop, kept the fastest run truncated to milliseconds, and
+ * had no warmup nor fork isolation: the first runs measured the interpreter
+ * and the JIT compiler, and every benchmark ran in a JVM already polluted by
+ * the profile and the garbage of the previous one.
+ *
+ * This project has no build system, so instead of depending on JMH the
+ * harness reproduces the parts of its methodology we need:
+ *
+ * 1) Fork isolation - every (benchmark, n) pair runs in a fresh JVM launched
+ *    with the same classpath, which prints a single result line back.
+ * 2) Warmup - WARMUP_ITERATIONS iterations are run and thrown away, so the
+ *    measured code is JIT compiled.
+ * 3) Time based iterations - each iteration calls the benchmark as many times
+ *    as fit in ITERATION_MILLIS (at least once), like JMH's @Measurement.
+ * 4) Blackhole - every result is stored into a volatile sink, so the JIT
+ *    can't eliminate the call as dead code.
+ * 5) Modes - reports both throughput (ops/s) and average time (ms/op).
+ * 6) GC profiler - reports the allocation rate (MB/s) and the bytes allocated
+ *    per operation, like JMH's -prof gc, using the allocated bytes counters of
+ *    com.sun.management.ThreadMXBean summed over all live threads (so the
+ *    ForkJoinPool workers of the parallel sieve are counted too).
+ *
+ * The benchmarks are partitionPrimes, partitionPrimesWithCustomCollector,
+ * the inline collect() variant partitionPrimesWithCustomCollectorNoClass,
+ * the primitive collector, the segmented sieves, the bitmap and primeCount
+ * (counting without enumerating, against the partitions), each with n varying from
+ * 10^4 to 10^7. Pass benchmark names and/or values of n as arguments to run a
+ * subset, for instance:
+ *
+ * java Java.Java8.Collectors.PrimeCollectorHarness partitionPrimesWithSieve 10000000
+ *
+ * Other classes benchmark their own code the same way by calling run() from
+ * their main() with their benchmarks, see ChunkedListCollector.main().
  */
 public class PrimeCollectorHarness {
-    
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1_000;
+    private static final int[] DEFAULT_N = {10_000, 100_000, 1_000_000, 10_000_000};
+
+    /** Blackhole, consumes the result of every benchmark invocation */
+    private static volatile Object sink;
+
     /**
-     * Calculates the performance increase of the custom collector over the 
-     * predefined collector and outputs it.
-     * @param bench1 the slower benchmark, predefined collector
-     * @param bench2 the faster benchmark, custom collector
+     * @return the benchmarks by name, in the order they are run
      */
-    private static void measurePerformance(long bench1, long bench2){
-        double val = 1.0 - ((double)bench2)/ ((double)bench1); 
-        double percent =  Math.round(val*100.0);   
-        System.out.println("Performance Increase: ~ " + percent + " %!");
+    private static Map<String, IntFunction<Object>> benchmarks() {
+        Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("partitionPrimes", PartitionPrimeNumbers::partitionPrimes);
+        benchmarks.put("partitionPrimesWithCustomCollector",
+            PartitionPrimeNumbers::partitionPrimesWithCustomCollector);
+        benchmarks.put("partitionPrimesWithCustomCollectorNoClass",
+            PartitionPrimeNumbers::partitionPrimesWithCustomCollectorNoClass);
+        benchmarks.put("partitionPrimesWithPrimitiveCollector",
+            PartitionPrimeNumbers::partitionPrimesWithPrimitiveCollector);
+        benchmarks.put("partitionPrimesInParallel", PartitionPrimeNumbers::partitionPrimesInParallel);
+        benchmarks.put("partitionPrimesWithSieve", PartitionPrimeNumbers::partitionPrimesWithSieve);
+        benchmarks.put("partitionPrimesWithParallelSieve",
+            PartitionPrimeNumbers::partitionPrimesWithParallelSieve);
+        benchmarks.put("partitionPrimesAsBitmap", PartitionPrimeNumbers::partitionPrimesAsBitmap);
+        benchmarks.put("primeCount", n -> PrimeCounting.primeCount(n));
+        return benchmarks;
     }
 
     /**
-     * Tests a partitioning by primes collector by running 10 tests,
-     * partitioning the first million natural numbers into primes and nonprimes,
-     * and checks which is the fastest execution time out of those 10 tests.
-     * @param primePartitioner The collector to test
-     * @return the fastest execution time using this collector
+     * @return the bytes allocated so far by all live threads
      */
-    private static long execute(Consumer<Integer> primePartitioner) {
-        long fastest = Long.MAX_VALUE;
-        
-        for (int i = 0; i < 10; i++) { // Run the test 10 times
-          long start = System.nanoTime();
-          // Partition the first million natural numbers into primes and nonprimes
-          primePartitioner.accept(1_000_000);
-          long duration = (System.nanoTime() - start) / 1_000_000;
-          // Check if current execution is the fastest one
-          if (duration < fastest) {
-            fastest = duration;
-          }
-          System.out.println("done in " + duration); // Prints times of each test
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) { // -1 for threads that died in the meantime
+                total += bytes;
+            }
         }
-        return fastest; // Return the fastest execution time
+        return total;
+    }
+
+    /**
+     * Runs one iteration: calls the benchmark until ITERATION_MILLIS have
+     * elapsed, and at least once.
+     * @param benchmark the benchmark to call
+     * @param n         the size the benchmark is called with, for instance the
+     *                  first n natural numbers to partition
+     * @return {operations, elapsed nanoseconds, allocated bytes}
+     */
+    private static long[] iteration(IntFunction<Object> benchmark, int n) {
+        long deadline = System.nanoTime() + ITERATION_MILLIS * 1_000_000;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        long now;
+        do {
+            sink = benchmark.apply(n);
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return new long[] {ops, now - start, allocatedBytes() - allocatedBefore};
     }
 
-    public static void main(String[] args){
-        long bench1, bench2;
-        
-        System.out.println("======== [Benchmark]: partitioning prime numbers by "
-            + "predefined collector from partitioningBy() factory method ========");
+    /**
+     * Forked side: warms up, measures and prints a single result line
+     * "ops nanos bytes" summed over the measurement iterations
+     * @param benchmark the benchmark to call
+     * @param n         the size the benchmark is called with, for instance the
+     *                  first n natural numbers to partition
+     */
+    private static void runFork(IntFunction<Object> benchmark, int n) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(benchmark, n);
+        }
+        long ops = 0, nanos = 0, bytes = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long[] result = iteration(benchmark, n);
+            ops += result[0];
+            nanos += result[1];
+            bytes += result[2];
+        }
+        System.out.println(ops + " " + nanos + " " + bytes);
+    }
+
+    /**
+     * Launches a fresh JVM running a single benchmark and reads its result
+     * @param owner the class whose main() runs the benchmark in the fork
+     * @param name  the benchmark name
+     * @param n     the size the benchmark is called with
+     * @return {operations, elapsed nanoseconds, allocated bytes}
+     */
+    private static long[] fork(Class<?> owner, String name, int n) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + "/bin/java";
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                owner.getName(), "--fork", name, String.valueOf(n))
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = reader.readLine();
+        }
+        if (process.waitFor() != 0 || line == null) {
+            throw new IllegalStateException("Fork failed for " + name + " n=" + n);
+        }
+        String[] fields = line.trim().split(" ");
+        return new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+    }
 
-        bench1 = execute(PartitionPrimeNumbers::partitionPrimes);
+    /**
+     * Prints one row of the results table: throughput, average time and the
+     * GC allocation rate
+     */
+    private static void report(String name, int n, long[] result) {
+        double seconds = result[1] / 1e9;
+        double throughput = result[0] / seconds;
+        double averageMillis = result[1] / 1e6 / result[0];
+        double allocationRate = result[2] / seconds / (1024 * 1024);
+        long bytesPerOp = result[2] / result[0];
+        System.out.printf("%-42s %10d %14.3f %14.3f %14.1f %16d%n",
+            name, n, throughput, averageMillis, allocationRate, bytesPerOp);
+    }
 
-        System.out.println("Partitioning done in: " +  bench1 + " msecs");
+    public static void main(String[] args) throws IOException, InterruptedException {
+        run(PrimeCollectorHarness.class, "partitioning prime numbers", benchmarks(), DEFAULT_N, args);
+    }
 
-         System.out.println("\n======== [Benchmark]: partitioning prime numbers by "
-             + "Custom Collector ========");
+    /**
+     * Runs benchmarks with the methodology of this harness. Called from the
+     * main() of the owner class, which is launched again in every fork
+     * @param owner      the class whose main() calls run()
+     * @param title      what is benchmarked, for the header of the table
+     * @param benchmarks the benchmarks by name, each one called with n
+     * @param defaultN   the values of n run when none is passed
+     * @param args       the arguments of main(): benchmark names and/or
+     *                   values of n, or the arguments of a fork
+     */
+    public static void run(Class<?> owner, String title, Map<String, IntFunction<Object>> benchmarks,
+                           int[] defaultN, String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("--fork")) {
+            runFork(benchmarks.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
 
-        bench2 = + execute(PartitionPrimeNumbers::partitionPrimesWithCustomCollector);
-        System.out.println("Partitioning done in: " + bench2 + " msecs\n");
+        // Select the benchmarks and the values of n passed as arguments, or all of them
+        List<String> names = new ArrayList<>();
+        List<Integer> ns = new ArrayList<>();
+        for (String arg : args) {
+            if (benchmarks.containsKey(arg)) {
+                names.add(arg);
+            } else {
+                ns.add(Integer.parseInt(arg.replace("_", "")));
+            }
+        }
+        if (names.isEmpty()) {
+            names.addAll(benchmarks.keySet());
+        }
+        if (ns.isEmpty()) {
+            for (int n : defaultN) {
+                ns.add(n);
+            }
+        }
 
-        System.out.println("[Summary]\nPredefined Collector:\t" 
-            + bench1 + " msecs\nCustom Collector:\t"
-            + bench2 + " msecs");
-        measurePerformance(bench1,bench2);
-    } 
+        System.out.println("======== [Benchmark]: " + title + ", "
+            + WARMUP_ITERATIONS + " warmup and " + MEASUREMENT_ITERATIONS
+            + " measurement iterations of " + ITERATION_MILLIS + " ms, one fork each ========\n");
+        System.out.printf("%-42s %10s %14s %14s %14s %16s%n",
+            "Benchmark", "n", "Thrpt(ops/s)", "Avgt(ms/op)", "gc.alloc(MB/s)", "gc.alloc(B/op)");
+        for (String name : names) {
+            for (int n : ns) {
+                report(name, n, fork(owner, name, n));
+            }
+        }
+    }
 }
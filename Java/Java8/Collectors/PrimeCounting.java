@@ -0,0 +1,172 @@
+package Java.Java8.Collectors;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The prime-counting function pi(x), the number of primes not greater than x,
+ * computed with the Meissel-Lehmer method instead of enumerating the primes.
+ *
+ * partitionPrimes(n).get(true).size() allocates every prime up to n, and even
+ * a sieve has to visit every number up to x. Meissel's formula counts them
+ * from much less information. Let a = pi(x^(1/3)) and p_i be the i-th prime:
+ *
+ * pi(x) = phi(x, a) + a - 1 - P2(x, a)
+ *
+ * 1) phi(x, a) - Legendre's function, the count of numbers not greater than x
+ *    that no prime among the first a divides. It follows the recurrence
+ *    phi(x, a) = phi(x, a-1) - phi(x / p_a, a-1), memoized as follows:
+ *    - phi(x, a) for a <= SMALL_A is read from a precomputed table, since it's
+ *      periodic with period Q = 2*3*5*7*11*13 = 30030
+ *    - once x < p_(a+1)^2, the numbers left are 1 and the primes in (p_a, x],
+ *      so phi(x, a) = pi(x) - a + 1 is read from the pi table
+ * 2) P2(x, a) - the count of numbers not greater than x that are the product
+ *    of exactly two primes, both greater than p_a:
+ *    P2 = sum over a < i <= pi(sqrt(x)) of pi(x / p_i) - (i - 1)
+ *
+ * Every pi(y) needed is for y <= x^(2/3), so it's looked up in a PrimeBitmap
+ * sieved up to x^(2/3): 10^8 numbers for x = 10^12, instead of 10^12.
+ * The terms of the outermost phi recurrence and of P2 are independent of each
+ * other, so they are summed with parallel streams.
+ *
+ * Works for x up to MAX_X, where x^(2/3) still fits in an int.
+ */
+public class PrimeCounting {
+
+    /** Largest x such that the pi table up to x^(2/3) fits in an int */
+    public static final long MAX_X = 99_000_000_000_000L;
+
+    /** phi(x, a) for a <= SMALL_A is read from PHI_TABLE */
+    private static final int SMALL_A = 6;
+    private static final int[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13};
+    private static final int Q = 2 * 3 * 5 * 7 * 11 * 13;
+
+    /** PHI_TABLE[a][r] = phi(r, a) for 0 <= r <= Q */
+    private static final int[][] PHI_TABLE = new int[SMALL_A + 1][Q + 1];
+    static {
+        boolean[] coprime = new boolean[Q + 1];
+        Arrays.fill(coprime, true);
+        coprime[0] = false;
+        for (int a = 0; a <= SMALL_A; a++) {
+            if (a > 0) {
+                for (int m = SMALL_PRIMES[a - 1]; m <= Q; m += SMALL_PRIMES[a - 1]) {
+                    coprime[m] = false;
+                }
+            }
+            for (int r = 1; r <= Q; r++) {
+                PHI_TABLE[a][r] = PHI_TABLE[a][r - 1] + (coprime[r] ? 1 : 0);
+            }
+        }
+    }
+
+    private final PrimeBitmap pi;    // pi(y) for y <= x^(2/3)
+    private final int[] primes;      // primes up to sqrt(x), primes[0] = 2
+
+    private PrimeCounting(PrimeBitmap pi, int[] primes) {
+        this.pi = pi;
+        this.primes = primes;
+    }
+
+    /**
+     * @return floor(x^(1/n)) for n = 2 or 3, exact despite floating point
+     */
+    private static long root(long x, int n) {
+        long r = (long) (n == 2 ? Math.sqrt((double) x) : Math.cbrt((double) x));
+        while (power(r, n) > x) {
+            r--;
+        }
+        while (power(r + 1, n) <= x) {
+            r++;
+        }
+        return r;
+    }
+
+    private static long power(long r, int n) {
+        return n == 2 ? r * r : r * r * r;
+    }
+
+    /**
+     * Legendre's function phi(x, a), see the class documentation
+     * @param x the last number, inclusive
+     * @param a the number of primes to sieve out
+     * @return the count of numbers in [1, x] not divisible by p_1 ... p_a
+     */
+    private long phi(long x, int a) {
+        if (a <= SMALL_A) {
+            return (x / Q) * PHI_TABLE[a][Q] + PHI_TABLE[a][(int) (x % Q)];
+        }
+        if (x < primes[a]) { // x < p_(a+1), only 1 is left
+            return x >= 1 ? 1 : 0;
+        }
+        if (x <= pi.limit() && x < (long) primes[a] * primes[a]) {
+            return pi.primeCount((int) x) - a + 1;
+        }
+        // Unrolled recurrence: phi(x, a) = phi(x, SMALL_A) - sum of phi(x / p_i, i - 1)
+        long result = phi(x, SMALL_A);
+        for (int i = SMALL_A + 1; i <= a; i++) {
+            long y = x / primes[i - 1];
+            if (y < primes[i - 1]) {
+                // y < p_i, so from here on every term is phi(y, i - 1) = 1 while p_i <= x,
+                // and x < p_(a+1)^2 isn't possible here, so every p_i up to p_a is <= x
+                return result - (a - i + 1);
+            }
+            result -= phi(y, i - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the primes not greater than x without enumerating them
+     * @param x the last number, inclusive, at most MAX_X
+     * @return pi(x)
+     */
+    public static long primeCount(long x) {
+        if (x > MAX_X) {
+            throw new IllegalArgumentException(x + " is greater than " + MAX_X);
+        }
+        if (x < 2) {
+            return 0;
+        }
+        long cube = root(x, 3);
+        long sqrt = root(x, 2);
+        // pi table up to x^(2/3), at least up to sqrt(x)
+        int limit = (int) Math.max(sqrt, Math.min(Integer.MAX_VALUE - 1, (x / cube) + 1));
+        PrimeCounting counting = new PrimeCounting(
+            PrimeBitmap.sieve(limit), SegmentedSieve.primesInRange(2, (int) sqrt + 1));
+
+        int a = counting.pi.primeCount((int) cube);
+        int b = counting.pi.primeCount((int) sqrt);
+        // phi(x, a) = phi(x, SMALL_A) - sum of phi(x / p_i, i - 1), the terms are independent
+        long phi = a <= SMALL_A ? counting.phi(x, a) : counting.phi(x, SMALL_A)
+            - IntStream.rangeClosed(SMALL_A + 1, a).parallel()
+                       .mapToLong(i -> counting.phi(x / counting.primes[i - 1], i - 1))
+                       .sum();
+        long p2 = IntStream.rangeClosed(a + 1, b).parallel()
+                           .mapToLong(i -> counting.pi.primeCount((int) (x / counting.primes[i - 1])) - (i - 1))
+                           .sum();
+        return phi + a - 1 - p2;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("======== Prime-counting function pi(x), Meissel-Lehmer ========");
+            for (long x = 10; x <= 1_000_000_000_000L; x *= 10) {
+                System.out.println("pi(" + x + ") = " + primeCount(x));
+            }
+            System.out.println();
+        }
+
+        // forked, warmed up runs of PrimeCollectorHarness
+        Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("primeCount", n -> primeCount(n));
+        benchmarks.put("partitionPrimesWithSieve", n -> PartitionPrimeNumbers.partitionPrimesWithSieve(n).primeCount());
+        benchmarks.put("partitionPrimesWithParallelSieve",
+            n -> PartitionPrimeNumbers.partitionPrimesWithParallelSieve(n).primeCount());
+        PrimeCollectorHarness.run(PrimeCounting.class, "pi(n), Meissel-Lehmer vs enumerating the primes",
+            benchmarks, new int[] {1_000_000, 10_000_000, 100_000_000}, args);
+    }
+}
@@ -0,0 +1,197 @@
+package Java.Java8.Collectors;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy streams of primes, generated by an incremental Segmented Sieve.
+ *
+ * PartitionPrimeNumbers materializes every prime and non prime up to n into
+ * lists, so n = 10^9 doesn't fit in memory at all. The streams built here
+ * never hold more than:
+ *
+ * 1) one segment of SegmentedSieve.SEGMENT_SIZE numbers (32 KB of bits), which
+ *    is sieved only when the stream has consumed every prime of the previous one
+ * 2) the base primes up to the square root of the current segment, which the
+ *    unbounded stream extends as it goes
+ *
+ * primesInRange(lo, hi) starts sieving at lo: below it only the base primes
+ * up to sqrt(hi) are ever computed. A bounded range can also be split at
+ * segment boundaries, so it can be consumed in parallel().
+ *
+ * Works for every number up to MAX = (2^31-1)^2, so that the base primes
+ * always fit in an int.
+ *
+ * long count = PrimeGenerator.primesInRange(1_000_000_000L, 1_001_000_000L).count();
+ */
+public class PrimeGenerator {
+
+    /** The largest number the streams can reach, (2^31-1)^2 */
+    public static final long MAX = (long) Integer.MAX_VALUE * Integer.MAX_VALUE;
+
+    /**
+     * Spliterator that sieves one segment at a time and hands out the primes
+     * of the current segment from its bitmap
+     */
+    private static class PrimeSpliterator extends Spliterators.AbstractLongSpliterator {
+        private final boolean bounded;
+        private final long hi;      // last number, inclusive
+        private long next;          // first number of the next segment
+        private int[] basePrimes;
+        private long[] bits;        // composite bitmap of the current segment
+        private long segmentLow;
+        private int words;          // words of the current segment
+        private long lastMask;      // valid bits of the last word
+        private int wordIndex;
+        private long word;          // primes left in the current word
+
+        PrimeSpliterator(long lo, long hi, int[] basePrimes, boolean bounded) {
+            super(Long.MAX_VALUE, ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE);
+            this.bounded = bounded;
+            this.hi = hi;
+            this.next = lo;
+            this.basePrimes = basePrimes;
+        }
+
+        /**
+         * Sieves the next segment into the bitmap
+         * @return false if there is no number left
+         */
+        private boolean nextSegment() {
+            if (next > hi) {
+                return false;
+            }
+            segmentLow = next;
+            long segmentHigh = Math.min(next + SegmentedSieve.SEGMENT_SIZE - 1, hi) + 1; // exclusive
+            ensureBasePrimes(segmentHigh - 1);
+            if (bits == null) {
+                bits = new long[SegmentedSieve.SEGMENT_SIZE >>> 6];
+            } else {
+                Arrays.fill(bits, 0L);
+            }
+            SegmentedSieve.crossOut(basePrimes, segmentLow, segmentHigh, bits, segmentLow);
+            long length = segmentHigh - segmentLow;
+            words = (int) ((length + 63) >>> 6);
+            lastMask = (length & 63) == 0 ? -1L : (1L << length) - 1;
+            wordIndex = -1;
+            word = 0;
+            next = segmentHigh;
+            return true;
+        }
+
+        /**
+         * Extends the base primes, only the unbounded stream ever needs to
+         * @param last the last number of the segment about to be sieved
+         */
+        private void ensureBasePrimes(long last) {
+            int limit = basePrimes.length == 0 ? 1 : basePrimes[basePrimes.length - 1];
+            if ((long) limit * limit >= last) {
+                return;
+            }
+            long root = (long) Math.sqrt((double) last) + 1;
+            basePrimes = SegmentedSieve.primesInRange(2,
+                (int) Math.min(Integer.MAX_VALUE, Math.max(root, 2L * limit)));
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (word == 0) {
+                if (wordIndex + 1 < words) {
+                    wordIndex++;
+                    word = ~bits[wordIndex];
+                    if (wordIndex == words - 1) {
+                        word &= lastMask;
+                    }
+                } else if (!nextSegment()) {
+                    return false;
+                }
+            }
+            long prime = segmentLow + ((long) wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            action.accept(prime);
+            return true;
+        }
+
+        /**
+         * Splits off the first half of the numbers left, at a segment boundary.
+         * Only a bounded range that isn't in the middle of a segment can split.
+         */
+        @Override
+        public Spliterator.OfLong trySplit() {
+            if (!bounded || word != 0 || wordIndex + 1 < words) {
+                return null;
+            }
+            long segments = (hi - next + 1) / SegmentedSieve.SEGMENT_SIZE;
+            if (segments < 2) {
+                return null;
+            }
+            long mid = next + (segments >>> 1) * SegmentedSieve.SEGMENT_SIZE;
+            PrimeSpliterator prefix = new PrimeSpliterator(next, mid - 1, basePrimes, true);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (!bounded) {
+                return Long.MAX_VALUE;
+            }
+            // pi(hi) - pi(next) is about the numbers left over ln(hi)
+            long left = Math.max(0, hi - next + 1);
+            return (long) (left / Math.log(Math.max(hi, 3))) + Long.bitCount(word);
+        }
+
+        @Override
+        public java.util.Comparator<? super Long> getComparator() {
+            return null; // natural order
+        }
+    }
+
+    /**
+     * @return an unbounded, lazy stream of all the primes in ascending order
+     */
+    public static LongStream primes() {
+        return StreamSupport.longStream(new PrimeSpliterator(2, MAX, new int[0], false), false);
+    }
+
+    /**
+     * Lazy stream of the primes within [lo, hi], nothing below lo is sieved
+     * besides the base primes up to sqrt(hi)
+     * @param lo first number of the range, inclusive
+     * @param hi last number of the range, inclusive, at most MAX
+     * @return the primes of the range in ascending order
+     */
+    public static LongStream primesInRange(long lo, long hi) {
+        if (hi > MAX) {
+            throw new IllegalArgumentException(hi + " is greater than " + MAX);
+        }
+        lo = Math.max(lo, 2);
+        if (hi < lo) {
+            return LongStream.empty();
+        }
+        int[] basePrimes = SegmentedSieve.primesInRange(2, (int) Math.sqrt((double) hi));
+        return StreamSupport.longStream(new PrimeSpliterator(lo, hi, basePrimes, true), false);
+    }
+
+    /**
+     * @param n the last number, inclusive
+     * @return a lazy stream of the int primes not greater than n
+     */
+    public static IntStream primesUpTo(int n) {
+        return primesInRange(2, n).mapToInt(p -> (int) p);
+    }
+
+    public static void main(String[] args) {
+        System.out.println("======== Lazy streams of primes ========");
+        System.out.println("[First 20 primes]\n " + Arrays.toString(primes().limit(20).toArray()));
+        System.out.println("\n[Primes between 10^12 and 10^12 + 100]\n "
+            + Arrays.toString(primesInRange(1_000_000_000_000L, 1_000_000_000_100L).toArray()));
+        System.out.println("\n[Number of primes up to 10^9, one segment in memory at a time]\n "
+            + primesInRange(2, 1_000_000_000L).parallel().count());
+    }
+}
@@ -119,6 +119,7 @@ public class PrimeNumbersCollector
      * tthe algorithm is inherently sequential. This means combiner method won't
      * ever be invoked, and you could leave its implementation empty (or better,
      * throw an UnsupportedOperationException). Implemented for completeness.
+     * See ParallelPrimeNumbersCollector for a version that works in parallel.
      * 
      * @return a function used by the reduction operation, defines how accumulators
      * resulting from the reduction of different subparts of the stream are
@@ -0,0 +1,200 @@
+package Java.Java8.Collectors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Thread-safe table of primes that grows on demand, shared across calls of
+ * PartitionPrimeNumbers and Math.Prime, so overlapping ranges asked again and
+ * again are only ever sieved once.
+ *
+ * 1) The table is an immutable Snapshot: the limit up to which it's complete,
+ *    and the ascending primes up to that limit.
+ * 2) Readers only read the volatile snapshot field, so isPrime() and
+ *    primesUpTo() never lock, even while the table is being extended.
+ * 3) A query beyond the limit extends the table under a lock: only the
+ *    missing range (limit, newLimit] is sieved with SegmentedSieve.primesInRange(),
+ *    appended to a copy of the primes, and published as a new Snapshot
+ *    (copy-on-write). The limit at least doubles, so extending the table
+ *    one number at a time still costs an amortized O(1) copy per prime.
+ * 4) save() writes the table to a snapshot file, and load() reads it back
+ *    into the table, so a restarted process warms up without sieving
+ *    anything. The primes are copied into an int[] on load, since the
+ *    snapshot is searched with Arrays.binarySearch(): only the read goes
+ *    through a mapping of the file.
+ *
+ * The snapshot file layout is a header of three ints (MAGIC, limit, count)
+ * followed by count ascending primes, all big-endian ints.
+ */
+public class PrimeTable {
+
+    private static final int MAGIC = 0x5052494D; // "PRIM"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int INITIAL_LIMIT = 1 << 16;
+
+    private static final PrimeTable SHARED = new PrimeTable();
+
+    /**
+     * Immutable state of the table: every prime up to limit, in order
+     */
+    private static final class Snapshot {
+        final int limit;
+        final int[] primes;
+
+        Snapshot(int limit, int[] primes) {
+            this.limit = limit;
+            this.primes = primes;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(1, new int[0]);
+
+    /**
+     * @return the table shared by the whole process
+     */
+    public static PrimeTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a snapshot complete up to at least n, extending the table if
+     * needed. Lock free when the table is already large enough.
+     * @param n the number the table must cover
+     * @return a snapshot with limit >= n
+     */
+    private Snapshot covering(int n) {
+        Snapshot current = snapshot;
+        if (current.limit >= n) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current.limit >= n) { // extended by another thread meanwhile
+                return current;
+            }
+            int newLimit = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(n, Math.max(INITIAL_LIMIT, 2L * current.limit)));
+            int[] missing = SegmentedSieve.primesInRange(current.limit + 1, newLimit);
+            int[] primes = Arrays.copyOf(current.primes, current.primes.length + missing.length);
+            System.arraycopy(missing, 0, primes, current.primes.length, missing.length);
+            snapshot = current = new Snapshot(newLimit, primes);
+            return current;
+        }
+    }
+
+    /**
+     * @return the number up to which the table is currently complete
+     */
+    public int limit() {
+        return snapshot.limit;
+    }
+
+    /**
+     * Tests the primality of a candidate with a binary search in the table
+     * @param candidate number to check primality
+     * @return true if candidate number is prime, false otherwise
+     */
+    public boolean isPrime(int candidate) {
+        if (candidate < 2) {
+            return false;
+        }
+        return Arrays.binarySearch(covering(candidate).primes, candidate) >= 0;
+    }
+
+    /**
+     * @param n the last number, inclusive
+     * @return the number of primes not greater than n
+     */
+    public int primeCount(int n) {
+        if (n < 2) {
+            return 0;
+        }
+        return countUpTo(covering(n), n);
+    }
+
+    /**
+     * @return the number of primes not greater than n in a snapshot covering n
+     */
+    private static int countUpTo(Snapshot current, int n) {
+        int index = Arrays.binarySearch(current.primes, n);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    /**
+     * @param n the last number, inclusive
+     * @return a copy of the ascending primes not greater than n
+     */
+    public int[] primesUpTo(int n) {
+        if (n < 2) {
+            return new int[0];
+        }
+        Snapshot current = covering(n);
+        return Arrays.copyOf(current.primes, countUpTo(current, n));
+    }
+
+    /**
+     * Writes the table to a snapshot file, replacing it if it exists
+     * @param file the snapshot file
+     */
+    public void save(Path file) throws IOException {
+        Snapshot current = snapshot;
+        long size = HEADER_BYTES + (long) current.primes.length * Integer.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(current.limit).putInt(current.primes.length);
+            buffer.asIntBuffer().put(current.primes);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Reads a snapshot file written by save() into the table, if it covers
+     * more numbers than the table currently does. The file is mapped for
+     * the read only, the primes are copied into the heap
+     * @param file the snapshot file
+     */
+    public void load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a prime table snapshot: " + file);
+            }
+            int limit = buffer.getInt();
+            int count = buffer.getInt();
+            IntBuffer ints = buffer.asIntBuffer();
+            if (ints.remaining() < count) {
+                throw new IOException("Truncated prime table snapshot: " + file);
+            }
+            int[] primes = new int[count];
+            ints.get(primes);
+            synchronized (this) {
+                if (limit > snapshot.limit) {
+                    snapshot = new Snapshot(limit, primes);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrimeTable table = new PrimeTable();
+        System.out.println("======== Incremental Prime Table ========");
+        System.out.println("[Primes up to 100]\n " + Arrays.toString(table.primesUpTo(100)));
+        System.out.println("\n[Table limit after the query]\n " + table.limit());
+        System.out.println("\n[Is 1_000_003 prime?]\n " + table.isPrime(1_000_003));
+        System.out.println("\n[Table limit after the query]\n " + table.limit());
+
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "primes.bin");
+        table.save(file);
+        PrimeTable restarted = new PrimeTable();
+        restarted.load(file);
+        System.out.println("\n[Primes up to 1_000_000 after loading the snapshot]\n "
+            + restarted.primeCount(1_000_000) + ", table limit " + restarted.limit());
+    }
+}
@@ -18,6 +18,9 @@ import static Java.Java8.Collectors.Dish.menu; // Use the Menu from Dish.java
  * 1. Count the Number of Dishes in the Menu, using counting()
  * 2. Find Maximum in a Stream of Values
  * 3. Find Minimum in a Stream of Values
+ * 4. Find the k Maximums in a Stream of Values, using TopKCollector
+ * 5. Count, find the Maximum and the Minimum in a single traversal, using
+ * FusedCollector
  * 
  * ================================= Methods =================================
  * -collect() - a terminal stream operation that combines all elements of a 
@@ -31,6 +34,9 @@ import static Java.Java8.Collectors.Dish.menu; // Use the Menu from Dish.java
  * 
  * -Collectors.minBy() - takes in a Comparator as argument and finds the minimum
  * element within the stream
+ * 
+ * -TopKCollector.topK() - takes in k and a Comparator, and finds the k maximum
+ * elements within the stream with a bounded heap, largest first
  */
 public class Reducing {
     
@@ -73,6 +79,32 @@ public class Reducing {
           + minCalorieDish.get().getCalories() + " Calories");
     }
 
+    // Finds the 3 most Caloric dishes within the menu, without sorting the menu
+    // Only a heap of 3 dishes is kept, topKByInt(3, Dish::getCalories) would
+    // also avoid boxing the calories
+    private static void findTopCalories(){
+        List<Dish> mostCalorieDishes = 
+            menu.stream().collect(TopKCollector.topK(3, Comparator.comparingInt(Dish::getCalories)));
+
+        System.out.println("Dishes with the most Calories are: " + mostCalorieDishes);
+    }
+
+    // Counts, finds the most and the least Caloric dish in one traversal of the
+    // menu instead of three, with each collector's result read by its Key
+    private static void findCountMaxMinInOnePass(){
+        Comparator<Dish> dishCaloriesComparator = 
+            Comparator.comparingInt(Dish::getCalories);
+        FusedCollector.Builder<Dish> builder = FusedCollector.builder();
+        FusedCollector.Key<Long> count = builder.add(Collectors.counting());
+        FusedCollector.Key<Optional<Dish>> max = builder.add(Collectors.maxBy(dishCaloriesComparator));
+        FusedCollector.Key<Optional<Dish>> min = builder.add(Collectors.minBy(dishCaloriesComparator));
+
+        FusedCollector.Results results = menu.stream().collect(builder.build());
+
+        System.out.println(results.get(count) + " dishes, the most caloric is " 
+            + results.get(max).get() + ", the least caloric is " + results.get(min).get());
+    }
+
     public static void main(String... args) {
         showMenu();
         System.out.println("\n===== Counting Number of Dishes in the menu =====");
@@ -81,6 +113,10 @@ public class Reducing {
         findMaxCalorie();
         System.out.println("\n===== Finding the Minimum within the menu =====");
         findMinCalorie();
+        System.out.println("\n===== Finding the 3 Maximums within the menu =====");
+        findTopCalories();
+        System.out.println("\n===== Counting, Maximum and Minimum in one traversal =====");
+        findCountMaxMinInOnePass();
     }
 
     // Displays the available menu and respective calories
@@ -0,0 +1,273 @@
+package Java.Java8.Collectors;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Segmented Sieve of Eratosthenes used as a partition strategy for
+ * PartitionPrimeNumbers.
+ *
+ * Trial division tests every candidate on its own, so partitioning the first
+ * n numbers costs O(n * sqrt(n)). The Sieve of Eratosthenes instead crosses
+ * out the multiples of each prime, in O(n log log n). A plain sieve walks an
+ * array of n flags once per prime, which falls out of the cache as soon as n
+ * is large, so the segmented version:
+ *
+ * 1) Sieves the base primes up to sqrt(n) with a small plain sieve. Every
+ *    composite number up to n has a prime factor among them.
+ * 2) Splits [0, n] into segments of SEGMENT_SIZE numbers, each one 32 KB of
+ *    bits so that it fits the L1 data cache.
+ * 3) For each segment crosses out the multiples of every base prime, starting
+ *    from max(p*p, first multiple of p in the segment).
+ * 4) Reads the primes of the segment back as the bits that are still clear.
+ *
+ * Unlike PrimeNumbersCollector, no segment depends on the primes found in an
+ * earlier segment, only on the base primes, so the segments can be processed
+ * in parallel on a ForkJoinPool. Segments are word aligned, so two tasks never
+ * write the same long of the composite bitmap.
+ *
+ * Works for any n up to Integer.MAX_VALUE (2^31-1).
+ */
+public class SegmentedSieve {
+
+    /** Numbers per segment, 2^18 bits = 32 KB */
+    static final int SEGMENT_SIZE = 1 << 18;
+
+    /** Segments sieved by a single fork-join task before it stops splitting */
+    private static final int SEGMENTS_PER_TASK = 4;
+
+    /**
+     * Sieves the base primes up to limit with a plain Sieve of Eratosthenes
+     * @param limit the largest number to test, inclusive
+     * @return ascending primes not greater than limit
+     */
+    public static int[] basePrimes(int limit) {
+        if (limit < 2) {
+            return new int[0];
+        }
+        boolean[] composite = new boolean[limit + 1];
+        int count = 0;
+        for (int i = 2; i <= limit; i++) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j <= limit; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        for (int i = 2, k = 0; i <= limit; i++) {
+            if (!composite[i]) {
+                primes[k++] = i;
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Crosses out the multiples of the base primes within [low, high)
+     * @param basePrimes primes up to the square root of the last number
+     * @param low        first number of the segment
+     * @param high       last number of the segment, exclusive
+     * @param composite  bitmap, the bit of number m is m - offset
+     * @param offset     number stored at bit 0 of the bitmap
+     */
+    static void crossOut(int[] basePrimes, long low, long high, long[] composite, long offset) {
+        for (int p : basePrimes) {
+            long start = Math.max((long) p * p, ((low + p - 1) / p) * p);
+            if (start >= high) {
+                if ((long) p * p >= high) {
+                    break; // every following prime also starts past the segment
+                }
+                continue;
+            }
+            for (long m = start - offset; m < high - offset; m += p) {
+                composite[(int) (m >>> 6)] |= 1L << m;
+            }
+        }
+    }
+
+    /**
+     * Crosses out the multiples of the base primes within [low, high) and
+     * returns the primes of that range
+     * @param basePrimes primes up to the square root of the last number
+     * @param low        first number of the segment, offset plus a multiple of 64
+     * @param high       last number of the segment, exclusive
+     * @param composite  bitmap, the bit of number m is m - offset
+     * @param offset     number stored at bit 0 of the bitmap
+     * @return ascending primes of the segment
+     */
+    static int[] sieveSegment(int[] basePrimes, long low, long high, long[] composite, long offset) {
+        crossOut(basePrimes, low, high, composite, offset);
+        // Collect the numbers that are still clear, a word at a time
+        int[] primes = new int[(int) Math.min(SEGMENT_SIZE >>> 3, ((high - low) >>> 1) + 16)];
+        int size = 0;
+        for (long w = (low - offset) >>> 6; (w << 6) < high - offset; w++) {
+            long clear = ~composite[(int) w];
+            long base = offset + (w << 6);
+            if (base == 0) {
+                clear &= ~3L; // 0 and 1 are not prime
+            }
+            if (high - base < 64) {
+                clear &= (1L << (high - base)) - 1; // past the end of the segment
+            }
+            while (clear != 0) {
+                if (size == primes.length) {
+                    primes = Arrays.copyOf(primes, size << 1);
+                }
+                primes[size++] = (int) (base + Long.numberOfTrailingZeros(clear));
+                clear &= clear - 1;
+            }
+        }
+        return Arrays.copyOf(primes, size);
+    }
+
+    /**
+     * Sieves only the numbers within [low, high], one segment at a time,
+     * reusing a single segment buffer. Nothing below low is sieved besides
+     * the base primes up to sqrt(high).
+     * @param low  first number of the range, inclusive
+     * @param high last number of the range, inclusive
+     * @return ascending primes of the range
+     */
+    public static int[] primesInRange(int low, int high) {
+        low = Math.max(low, 2);
+        if (high < low) {
+            return new int[0];
+        }
+        int[] basePrimes = basePrimes((int) Math.sqrt((double) high));
+        long[] segment = new long[SEGMENT_SIZE >>> 6];
+        long limit = (long) high + 1; // exclusive
+        int[] primes = new int[16];
+        int size = 0;
+        for (long segmentLow = low; segmentLow < limit; segmentLow += SEGMENT_SIZE) {
+            long segmentHigh = Math.min(segmentLow + SEGMENT_SIZE, limit);
+            Arrays.fill(segment, 0L);
+            int[] found = sieveSegment(basePrimes, segmentLow, segmentHigh, segment, segmentLow);
+            if (size + found.length > primes.length) {
+                primes = Arrays.copyOf(primes, Math.max(size + found.length, primes.length << 1));
+            }
+            System.arraycopy(found, 0, primes, size, found.length);
+            size += found.length;
+        }
+        return Arrays.copyOf(primes, size);
+    }
+
+    /**
+     * Fork-join task that sieves a range of segments, splitting it in half
+     * until it's no more than SEGMENTS_PER_TASK segments long
+     */
+    private static class SieveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] basePrimes;
+        private final long[] composite;
+        private final int[][] segmentPrimes;
+        private final long limit;
+        private final int from;
+        private final int to;
+
+        SieveTask(int[] basePrimes, long[] composite, int[][] segmentPrimes,
+                  long limit, int from, int to) {
+            this.basePrimes = basePrimes;
+            this.composite = composite;
+            this.segmentPrimes = segmentPrimes;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEGMENTS_PER_TASK) {
+                for (int s = from; s < to; s++) {
+                    long low = (long) s * SEGMENT_SIZE;
+                    long high = Math.min(low + SEGMENT_SIZE, limit);
+                    segmentPrimes[s] = sieveSegment(basePrimes, low, high, composite, 0);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SieveTask(basePrimes, composite, segmentPrimes, limit, from, mid),
+                      new SieveTask(basePrimes, composite, segmentPrimes, limit, mid, to));
+        }
+    }
+
+    /**
+     * Partitions the numbers from 2 to n between primes and non primes,
+     * sieving one segment after the other
+     * @param n the last number to partition, inclusive
+     * @return the compact partition of the numbers
+     */
+    public static IntPrimeNumbersCollector.PrimePartition sieve(int n) {
+        return sieve(n, null);
+    }
+
+    /**
+     * Partitions the numbers from 2 to n between primes and non primes,
+     * sieving the segments in parallel on the common ForkJoinPool
+     * @param n the last number to partition, inclusive
+     * @return the compact partition of the numbers
+     */
+    public static IntPrimeNumbersCollector.PrimePartition parallelSieve(int n) {
+        return sieve(n, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Partitions the numbers from 2 to n between primes and non primes
+     * @param n    the last number to partition, inclusive
+     * @param pool the pool to sieve the segments on, or null to sieve sequentially
+     * @return the compact partition of the numbers
+     */
+    public static IntPrimeNumbersCollector.PrimePartition sieve(int n, ForkJoinPool pool) {
+        if (n < 2) {
+            return new IntPrimeNumbersCollector.PrimePartition(new int[0], new BitSet());
+        }
+        long limit = (long) n + 1; // exclusive
+        int[] basePrimes = basePrimes((int) Math.sqrt((double) n));
+        long[] composite = new long[(int) ((limit + 63) >>> 6)];
+        int segments = (int) ((limit + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        int[][] segmentPrimes = new int[segments][];
+
+        if (pool == null) {
+            // On the calling thread: compute() of a SieveTask would invokeAll()
+            // its halves, which forks them onto the common pool
+            for (int s = 0; s < segments; s++) {
+                long low = (long) s * SEGMENT_SIZE;
+                long high = Math.min(low + SEGMENT_SIZE, limit);
+                segmentPrimes[s] = sieveSegment(basePrimes, low, high, composite, 0);
+            }
+        } else {
+            pool.invoke(new SieveTask(basePrimes, composite, segmentPrimes, limit, 0, segments));
+        }
+
+        // Concatenate the primes of each segment, in order
+        int count = 0;
+        for (int[] primes : segmentPrimes) {
+            count += primes.length;
+        }
+        int[] primes = new int[count];
+        int offset = 0;
+        for (int[] segment : segmentPrimes) {
+            System.arraycopy(segment, 0, primes, offset, segment.length);
+            offset += segment.length;
+        }
+        // Only numbers from 2 to n are ever crossed out
+        return new IntPrimeNumbersCollector.PrimePartition(primes, BitSet.valueOf(composite));
+    }
+
+    public static void main(String[] args) {
+        int n = 100;
+        System.out.println("======== Partition first " + n + " numbers with a Segmented Sieve ========");
+        System.out.println("\n[Sequential]\n " + sieve(n));
+        System.out.println("\n[Parallel]\n " + parallelSieve(n));
+
+        n = 10_000_000;
+        long start = System.nanoTime();
+        int count = parallelSieve(n).primeCount();
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("\n[Primes up to " + n + "]\n " + count + " found in " + duration + " msecs");
+    }
+}
@@ -4,6 +4,7 @@ import static Java.Java8.Collectors.Dish.menu; // Use the Menu from Dish.java
 
 import java.util.Comparator;
 import java.util.IntSummaryStatistics;
+import java.util.Optional;
 import java.util.function.BinaryOperator;
 
 import java.util.List;
@@ -14,6 +15,11 @@ import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.reducing;
 import static java.util.stream.Collectors.summarizingInt;
 import static java.util.stream.Collectors.summingInt;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.maxBy;
+import static java.util.stream.Collectors.minBy;
+import static java.util.Comparator.comparingInt;
+import static Java.Java8.Collectors.IntDistributionStatistics.summarizingDistribution;
 
 /**
  * Collectors provide specific factory method for summing, which accepts a 
@@ -27,6 +33,10 @@ import static java.util.stream.Collectors.summingInt;
  * 3. Find count, sum, minimum, average, and maximum all in one operation
  * 4. Concatenate the names of all dishes in the menu
  * 5. Produce a comma-separated list of Dish Names 
+ * 6. Find count, sum, min, max, average, variance, percentiles and the most
+ * caloric dishes' calories all in one pass with IntDistributionStatistics
+ * 7. Count, sum, average, find the most and least caloric dishes and join
+ * their names, all in one traversal of the menu with FusedCollector
  * 
  * ================================= Methods =================================
  * -collect() - a terminal stream operation that combines all elements of a 
@@ -100,6 +110,43 @@ public class Summarizing {
         return menu.stream().map(Dish::getName).collect(joining(", "));
     }
 
+    /** 6. Retrieve what 1., 2. and 3. compute, plus the spread of the calories,
+     * in one pass over the menu
+     * 
+     * IntDistributionStatistics extends the statistics of IntSummaryStatistics
+     * with Welford's variance, percentiles estimated from a histogram and the
+     * k largest values, and combines partial statistics for parallel streams:
+     * IntDistributionStatistics{count=9, sum=4300, min=120, average=477.777778,
+     * max=800, stddev=188.076685, p50=452, p90=800, p99=800, top=[800, 700, 550]}
+     * The percentiles are estimated: the exact median is 450
+     * @return IntDistributionStatistics object
+     */
+    private static IntDistributionStatistics calculateMenuDistribution() {
+        return menu.stream().collect(summarizingDistribution(Dish::getCalories, 3));
+    }
+
+    /** 7. Runs the collectors of 1., 2., 4. and of the reductions below in a
+     * single traversal of the menu instead of streaming it once per collector
+     * 
+     * Each collector added to the FusedCollector.Builder returns a typed Key,
+     * used to read its result from the Results of the fused collector.
+     * @return a summary of the menu
+     */
+    private static String summarizeMenuInOnePass() {
+        FusedCollector.Builder<Dish> builder = FusedCollector.builder();
+        FusedCollector.Key<Long> count = builder.add(counting());
+        FusedCollector.Key<Integer> total = builder.add(summingInt(Dish::getCalories));
+        FusedCollector.Key<Double> average = builder.add(averagingInt(Dish::getCalories));
+        FusedCollector.Key<Optional<Dish>> most = builder.add(maxBy(comparingInt(Dish::getCalories)));
+        FusedCollector.Key<Optional<Dish>> least = builder.add(minBy(comparingInt(Dish::getCalories)));
+        FusedCollector.Key<String> names = builder.add(mapping(Dish::getName, joining(", ")));
+
+        FusedCollector.Results results = menu.stream().collect(builder.build());
+        return results.get(count) + " dishes, " + results.get(total) + " calories, "
+            + results.get(average) + " on average, most caloric: " + results.get(most).get()
+            + ", least caloric: " + results.get(least).get() + "\n[" + results.get(names) + "]";
+    }
+
     public static void main(String[] args) {
         System.out.println("======== Menu Summary & Statistics ========");
         showMenu();
@@ -112,9 +159,13 @@ public class Summarizing {
         System.out.println("Average calories in menu: " + calculateAverageCalories());
         System.out.println("\n======== IntSummaryStatistics ========");
         System.out.println("Menu statistics: " + calculateMenuStatistics());
+        System.out.println("\n======== IntDistributionStatistics ========");
+        System.out.println("Menu distribution: " + calculateMenuDistribution());
         System.out.println("\n======== Concatenate the names of dishes ========");
         System.out.println("[Short menu]\n" + getShortMenu());
         System.out.println("\n[Short menu comma-separated]\n" + getShortMenuCommaSeparated());
+        System.out.println("\n======== Everything in One Traversal ========");
+        System.out.println(summarizeMenuInOnePass());
     }
 
     // Reduction Operations
@@ -145,13 +145,16 @@ public class ToListCollector<T> implements Collector<T, List<T>, List<T>>{
      * to accumulate the elements in the stream is already the expected final
      * result and doesn't need any further transformation. 
      * Not UNORDERED because if you applly it to an ordered stream you want this 
-     * ordering to be preserved in the resulting List. Finally, it's CONCURRENT,
-     * the stream will be processed in parallel only if its underlying data source
-     * is unordered.
+     * ordering to be preserved in the resulting List. Finally, it's not
+     * CONCURRENT: on an unordered source a CONCURRENT collector shares a single
+     * accumulator between threads, and List::add on an ArrayList isn't 
+     * thread-safe. Parallel streams still work, each split gets its own List
+     * and they are merged by the combiner. See ChunkedListCollector for a 
+     * version whose combiner doesn't copy.
      */
     @Override
     public Set<Characteristics> characteristics(){
-        // Flags the collector as IDENTITY_FINISH and CONCURRENT
-        return Collections.unmodifiableSet(EnumSet.of(IDENTITY_FINISH, CONCURRENT)); 
+        // Flags the collector as IDENTITY_FINISH
+        return Collections.unmodifiableSet(EnumSet.of(IDENTITY_FINISH)); 
     }
 }
@@ -0,0 +1,325 @@
+package Java.Java8.Collectors;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A Collector of the k largest elements of a stream, the generalization of
+ * maxBy() to k elements.
+ *
+ * Sorting the stream and keeping the first k elements takes O(n log n) time
+ * and buffers all n elements. This collector keeps a bounded binary min-heap
+ * of at most k elements per split instead, whose root is the smallest element
+ * still in the top k:
+ *
+ * 1) supplier    - an empty heap of capacity k
+ * 2) accumulator - while the heap isn't full the element is added; after that
+ *                  it's compared to the root only, and replaces it if larger.
+ *                  That's O(log k) per element at worst, O(1) for most of
+ *                  them once the heap holds large elements, so O(n log k)
+ * 3) combiner    - offers the at most k elements of one heap to the other
+ * 4) finisher    - sorts the k elements, largest first
+ *
+ * topKByInt() ranks the elements by an int key, kept in an int[] beside the
+ * elements so the keys are never boxed, and the IntHeap alone is the top k of
+ * an IntStream, see topK(IntStream, int).
+ *
+ * List<Dish> mostCaloric = menu.stream()
+ *     .collect(TopKCollector.topK(3, comparingInt(Dish::getCalories)));
+ */
+public class TopKCollector<T> implements Collector<T, TopKCollector.Heap<T>, List<T>> {
+
+    /**
+     * Bounded min-heap of elements ranked by a Comparator
+     */
+    static final class Heap<T> {
+        private final Object[] items;
+        private final Comparator<? super T> comparator;
+        private int size;
+
+        Heap(int k, Comparator<? super T> comparator) {
+            this.items = new Object[k];
+            this.comparator = comparator;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T item(int i) {
+            return (T) items[i];
+        }
+
+        void offer(T element) {
+            if (size < items.length) {
+                int i = size++;
+                while (i > 0 && comparator.compare(item((i - 1) >>> 1), element) > 0) { // sift up
+                    items[i] = items[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                items[i] = element;
+            } else if (size > 0 && comparator.compare(element, item(0)) > 0) {
+                int i = 0;
+                while (true) { // sift down from the root
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && comparator.compare(item(child + 1), item(child)) < 0) {
+                        child++;
+                    }
+                    if (comparator.compare(item(child), element) >= 0) {
+                        break;
+                    }
+                    items[i] = items[child];
+                    i = child;
+                }
+                items[i] = element;
+            }
+        }
+
+        Heap<T> combine(Heap<T> other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.item(i));
+            }
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> toSortedList() {
+            T[] sorted = (T[]) Arrays.copyOf(items, size);
+            Arrays.sort(sorted, comparator.reversed());
+            return Arrays.asList(sorted);
+        }
+    }
+
+    /**
+     * Bounded min-heap of int keys, optionally with an element per key
+     */
+    public static final class IntHeap {
+        private final int[] keys;
+        private final Object[] values;   // null for the keys alone
+        private int size;
+
+        /**
+         * Heap of the k largest ints
+         */
+        public IntHeap(int k) {
+            this(k, false);
+        }
+
+        IntHeap(int k, boolean withValues) {
+            if (k < 0) {
+                throw new IllegalArgumentException("Negative k: " + k);
+            }
+            this.keys = new int[k];
+            this.values = withValues ? new Object[k] : null;
+        }
+
+        public void accept(int key) {
+            offer(key, null);
+        }
+
+        void offer(int key, Object value) {
+            if (size < keys.length) {
+                int i = size++;
+                while (i > 0 && keys[(i - 1) >>> 1] > key) { // sift up
+                    move((i - 1) >>> 1, i);
+                    i = (i - 1) >>> 1;
+                }
+                set(i, key, value);
+            } else if (size > 0 && key > keys[0]) {
+                int i = 0;
+                while (true) { // sift down from the root
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    move(child, i);
+                    i = child;
+                }
+                set(i, key, value);
+            }
+        }
+
+        private void move(int from, int to) {
+            keys[to] = keys[from];
+            if (values != null) {
+                values[to] = values[from];
+            }
+        }
+
+        private void set(int i, int key, Object value) {
+            keys[i] = key;
+            if (values != null) {
+                values[i] = value;
+            }
+        }
+
+        public IntHeap combine(IntHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.keys[i], other.values == null ? null : other.values[i]);
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the keys, largest first
+         */
+        public int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(keys, size);
+            Arrays.sort(sorted);
+            for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+                int swap = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = swap;
+            }
+            return sorted;
+        }
+
+        /**
+         * @return the elements, largest key first
+         */
+        @SuppressWarnings("unchecked")
+        <T> List<T> toSortedList() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> Integer.compare(keys[j], keys[i])); // only k boxed indexes
+            Object[] sorted = new Object[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = values[order[i]];
+            }
+            return Arrays.asList((T[]) sorted);
+        }
+    }
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+
+    /**
+     * @param k          how many elements to keep
+     * @param comparator the order of the elements, the largest are kept
+     */
+    public TopKCollector(int k, Comparator<? super T> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative k: " + k);
+        }
+        this.k = k;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Collects the k largest elements according to a Comparator, largest first
+     */
+    public static <T> Collector<T, ?, List<T>> topK(int k, Comparator<? super T> comparator) {
+        return new TopKCollector<>(k, comparator);
+    }
+
+    /**
+     * Collects the k elements with the largest int keys, largest first, without
+     * boxing the keys
+     */
+    public static <T> Collector<T, ?, List<T>> topKByInt(int k, ToIntFunction<? super T> key) {
+        return Collector.<T, IntHeap, List<T>>of(
+            () -> new IntHeap(k, true),
+            (heap, element) -> heap.offer(key.applyAsInt(element), element),
+            IntHeap::combine,
+            IntHeap::toSortedList);
+    }
+
+    /**
+     * @return the k largest values of an IntStream, largest first
+     */
+    public static int[] topK(IntStream values, int k) {
+        return values.collect(() -> new IntHeap(k), IntHeap::accept, IntHeap::combine).toSortedArray();
+    }
+
+    @Override
+    public Supplier<Heap<T>> supplier() {
+        return () -> new Heap<>(k, comparator);
+    }
+
+    @Override
+    public BiConsumer<Heap<T>, T> accumulator() {
+        return Heap::offer;
+    }
+
+    @Override
+    public BinaryOperator<Heap<T>> combiner() {
+        return Heap::combine;
+    }
+
+    @Override
+    public Function<Heap<T>, List<T>> finisher() {
+        return Heap::toSortedList;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    /** The random values of the benchmarks, generated once per fork outside the measured calls */
+    private static int[] values = new int[0];
+
+    private static int[] values(int n) {
+        if (values.length != n) {
+            values = new Random(42).ints(n).toArray();
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int k = 100;
+        if (args.length == 0) {
+            System.out.println("======== 3 most caloric dishes ========");
+            System.out.println(Dish.menu.stream().collect(topK(3, Comparator.comparingInt(Dish::getCalories))));
+            System.out.println(Dish.menu.stream().collect(topKByInt(3, Dish::getCalories)));
+
+            int[] sample = values(1_000_000);
+            List<Integer> sorted = IntStream.of(sample).parallel().boxed()
+                .sorted(Comparator.reverseOrder()).limit(k).collect(Collectors.toList());
+            List<Integer> heap = IntStream.of(sample).parallel().boxed()
+                .collect(topK(k, Comparator.naturalOrder()));
+            int[] primitive = topK(IntStream.of(sample).parallel(), k);
+            System.out.println("same top " + k + " results: " + (sorted.equals(heap)
+                && Arrays.equals(primitive, heap.stream().mapToInt(Integer::intValue).toArray())));
+            System.out.println();
+        }
+
+        // forked, warmed up runs of PrimeCollectorHarness
+        Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("sorted().limit()", n -> IntStream.of(values(n)).parallel().boxed()
+            .sorted(Comparator.reverseOrder()).limit(k).collect(Collectors.toList()));
+        benchmarks.put("topK()", n -> IntStream.of(values(n)).parallel().boxed()
+            .collect(topK(k, Comparator.naturalOrder())));
+        benchmarks.put("topK(IntStream)", n -> topK(IntStream.of(values(n)).parallel(), k));
+        PrimeCollectorHarness.run(TopKCollector.class, "top " + k + " of n random values",
+            benchmarks, new int[] {10_000_000}, args);
+    }
+}
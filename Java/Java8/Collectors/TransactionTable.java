@@ -0,0 +1,155 @@
+package Java.Java8.Collectors;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import Java.Java8.Collectors.GroupingTransactions.Currency;
+import Java.Java8.Collectors.GroupingTransactions.Transaction;
+
+/**
+ * GroupingTransactions.transactions stored by column, see DishTable:
+ *
+ * - currency byte[]   the ordinal() of the Currency of row i
+ * - value    double[] the value of row i
+ *
+ * TransactionTable table = TransactionTable.of(transactions);
+ * double[] totals = table.sumByCurrency();
+ */
+public class TransactionTable {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private int size;
+    private byte[] currencies;
+    private double[] values;
+
+    public TransactionTable() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of rows expected, the table grows past it
+     */
+    public TransactionTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.currencies = new byte[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * @return a table of the transactions, in the same order
+     */
+    public static TransactionTable of(List<Transaction> transactions) {
+        TransactionTable table = new TransactionTable(transactions.size());
+        for (Transaction transaction : transactions) {
+            table.add(transaction.getCurrency(), transaction.getValue());
+        }
+        return table;
+    }
+
+    /**
+     * Appends a row
+     */
+    public void add(Currency currency, double value) {
+        if (size == values.length) {
+            currencies = Arrays.copyOf(currencies, size << 1);
+            values = Arrays.copyOf(values, size << 1);
+        }
+        currencies[size] = (byte) currency.ordinal();
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return row i as a Transaction object
+     */
+    public Transaction get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return new Transaction(CURRENCIES[currencies[row]], values[row]);
+    }
+
+    /**
+     * @return the rows with a value greater than the threshold
+     */
+    public BitSet valueGreaterThan(double threshold) {
+        BitSet rows = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (values[i] > threshold) {
+                rows.set(i);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the values summed per Currency, indexed by ordinal()
+     */
+    public double[] sumByCurrency() {
+        double[] sums = new double[CURRENCIES.length];
+        for (int i = 0; i < size; i++) {
+            sums[currencies[i]] += values[i];
+        }
+        return sums;
+    }
+
+    /**
+     * @return the values of the rows summed per Currency, indexed by ordinal()
+     */
+    public double[] sumByCurrency(BitSet rows) {
+        double[] sums = new double[CURRENCIES.length];
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            sums[currencies[i]] += values[i];
+        }
+        return sums;
+    }
+
+    /**
+     * @return the number of transactions per Currency, indexed by ordinal()
+     */
+    public int[] countByCurrency() {
+        int[] counts = new int[CURRENCIES.length];
+        for (int i = 0; i < size; i++) {
+            counts[currencies[i]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * @return sumByCurrency() as a Map of the currencies having transactions
+     */
+    public Map<Currency, Double> sumByCurrencyAsMap() {
+        double[] sums = sumByCurrency();
+        int[] counts = countByCurrency();
+        Map<Currency, Double> result = new EnumMap<>(Currency.class);
+        for (Currency currency : CURRENCIES) {
+            if (counts[currency.ordinal()] > 0) {
+                result.put(currency, sums[currency.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionTable{rows=" + size + "}";
+    }
+
+    public static void main(String[] args) {
+        TransactionTable table = TransactionTable.of(GroupingTransactions.transactions);
+        System.out.println("======== Transactions as a columnar table ========");
+        System.out.println(table);
+        System.out.println("Total by currency: " + table.sumByCurrencyAsMap());
+        System.out.println("Transactions over 5000 by currency: "
+            + Arrays.toString(table.sumByCurrency(table.valueGreaterThan(5000))) + " for "
+            + Arrays.toString(CURRENCIES));
+    }
+}
@@ -0,0 +1,317 @@
+package Java.Java8.Streams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Spliterator over the lines of a memory-mapped file, splitting at newlines
+ * so that parallel streams of lines scale with the cores.
+ *
+ * Files.lines() reads the file sequentially through a Reader, and only splits
+ * well for a few charsets; Files.readString() reads everything into a single
+ * String, which doesn't split at all. Here instead:
+ *
+ * 1) the file is mapped in segments of at most MAX_SEGMENT bytes, each ending
+ *    at a newline
+ * 2) trySplit() splits the segments in halves, then a segment at the newline
+ *    closest to the middle of its range, so both halves hold whole lines
+ * 3) a line is returned as a CharSequence view of the mapped bytes rather than
+ *    a decoded String: nothing is copied until toString() is called. A line
+ *    with bytes outside of ASCII is decoded into a String when the charset is
+ *    UTF-8, since a view can only map one byte to one char
+ *
+ * Lines end at "\n" or "\r\n". The number of lines isn't known in advance, so
+ * the estimated size is the remaining bytes divided by the average length of
+ * the lines at the start of the file.
+ *
+ * A view reads the mapped file whenever it's read, and like any CharSequence
+ * its equals() and hashCode() are those of Object: to keep a line, or use it
+ * as a Map key, keep its toString().
+ *
+ * long chars = MappedLineSpliterator.lines(path).parallel()
+ *     .mapToLong(line -> line.length()).sum();
+ */
+public class MappedLineSpliterator implements Spliterator<CharSequence> {
+
+    /** Largest segment mapped at once, a MappedByteBuffer is indexed by an int */
+    static final int MAX_SEGMENT = 1 << 30;
+    /** Smallest range worth splitting */
+    private static final int MIN_SPLIT = 1 << 14;
+
+    /**
+     * A line as a view of the mapped bytes, one char per byte
+     */
+    static final class LineView implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int length;
+
+        LineView(ByteBuffer buffer, int from, int length) {
+            this.buffer = buffer;
+            this.from = from;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) (buffer.get(from + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") out of " + length);
+            }
+            return new LineView(buffer, from + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private final MappedByteBuffer[] segments;
+    private final boolean utf8;
+    private final double averageLine;
+    private int segment;        // current segment
+    private final int lastSegment;
+    private int position;       // in the current segment
+    private int end;            // in the last segment, exclusive
+
+    private MappedLineSpliterator(MappedByteBuffer[] segments, boolean utf8, double averageLine,
+                                  int segment, int position, int lastSegment, int end) {
+        this.segments = segments;
+        this.utf8 = utf8;
+        this.averageLine = averageLine;
+        this.segment = segment;
+        this.position = position;
+        this.lastSegment = lastSegment;
+        this.end = end;
+    }
+
+    /**
+     * @return the lines of a UTF-8 file
+     */
+    public static Stream<CharSequence> lines(Path path) {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param charset UTF-8, US-ASCII or ISO-8859-1, whose newline is a single
+     *                byte that can't be part of another character
+     * @return the lines of the file, a sequential stream that can be made parallel
+     */
+    public static Stream<CharSequence> lines(Path path, Charset charset) {
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+        if (!utf8 && !charset.equals(StandardCharsets.US_ASCII) && !charset.equals(StandardCharsets.ISO_8859_1)) {
+            throw new IllegalArgumentException("Unsupported charset " + charset);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mappings stay valid once the channel is closed
+            MappedByteBuffer[] segments = map(channel);
+            MappedByteBuffer last = segments[segments.length - 1];
+            return StreamSupport.stream(new MappedLineSpliterator(segments, utf8, averageLine(segments[0]),
+                0, 0, segments.length - 1, last.limit()), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) (size / (MAX_SEGMENT / 2)) + 1];
+        int count = 0;
+        long start = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (count == 0 || start < size) {
+            long stop = Math.min(size, start + MAX_SEGMENT / 2);
+            if (stop < size) {
+                stop = nextNewline(channel, stop, probe) + 1;
+                if (stop - start > MAX_SEGMENT) {
+                    throw new IOException("Line longer than " + MAX_SEGMENT / 2 + " bytes at " + start);
+                }
+            }
+            segments[count++] = channel.map(FileChannel.MapMode.READ_ONLY, start, stop - start);
+            start = stop;
+        }
+        return Arrays.copyOf(segments, count);
+    }
+
+    private static long nextNewline(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size() - 1;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return the average length of the lines in the first 64 KB, newline included
+     */
+    private static double averageLine(ByteBuffer buffer) {
+        int sample = Math.min(buffer.limit(), 1 << 16);
+        int newlines = 0;
+        for (int i = 0; i < sample; i++) {
+            if (buffer.get(i) == '\n') {
+                newlines++;
+            }
+        }
+        return newlines == 0 ? Math.max(1, sample) : (double) sample / newlines;
+    }
+
+    private int limit(int index) {
+        return index == lastSegment ? end : segments[index].limit();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super CharSequence> action) {
+        while (position >= limit(segment)) {
+            if (segment == lastSegment) {
+                return false;
+            }
+            segment++;
+            position = 0;
+        }
+        MappedByteBuffer buffer = segments[segment];
+        int limit = limit(segment);
+        int from = position;
+        boolean ascii = true;
+        int i = from;
+        byte b;
+        while (i < limit && (b = buffer.get(i)) != '\n') {
+            ascii &= b >= 0;
+            i++;
+        }
+        position = i + 1; // past the newline
+        int to = i > from && buffer.get(i - 1) == '\r' ? i - 1 : i;
+        if (ascii || !utf8) {
+            action.accept(new LineView(buffer, from, to - from));
+        } else {
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            action.accept(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+
+    @Override
+    public Spliterator<CharSequence> trySplit() {
+        if (segment < lastSegment) {
+            // whole segments to the prefix, the current one included
+            int middle = segment + (lastSegment - segment - 1) / 2;
+            MappedLineSpliterator prefix = new MappedLineSpliterator(segments, utf8, averageLine,
+                segment, position, middle, segments[middle].limit());
+            segment = middle + 1;
+            position = 0;
+            return prefix;
+        }
+        if (end - position < MIN_SPLIT) {
+            return null;
+        }
+        MappedByteBuffer buffer = segments[segment];
+        int split = position + (end - position) / 2;
+        while (split < end && buffer.get(split) != '\n') {
+            split++;
+        }
+        if (split >= end - 1) {
+            return null; // a single line
+        }
+        MappedLineSpliterator prefix = new MappedLineSpliterator(segments, utf8, averageLine,
+            segment, position, segment, split + 1);
+        position = split + 1;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long bytes = limit(segment) - (long) position;
+        for (int i = segment + 1; i <= lastSegment; i++) {
+            bytes += limit(i);
+        }
+        return (long) Math.ceil(bytes / averageLine);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("lines", ".txt");
+        try {
+            Random random = new Random(42);
+            StringBuilder text = new StringBuilder();
+            for (int line = 0; line < 3_000_000; line++) {
+                for (int word = 0; word < 6; word++) {
+                    text.append("word").append(random.nextInt(10_000)).append(word < 5 ? ' ' : '\n');
+                }
+                if (text.length() > 1 << 20) {
+                    Files.writeString(file, text, StandardOpenOption.APPEND);
+                    text.setLength(0);
+                }
+            }
+            Files.writeString(file, text, StandardOpenOption.APPEND);
+            System.out.println("======== [Benchmark]: characters of a "
+                + (Files.size(file) >> 20) + " MB file ========");
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                long chars;
+                try (Stream<String> lines = Files.lines(file)) {
+                    chars = lines.parallel().mapToLong(String::length).sum();
+                }
+                long filesLines = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long mappedChars = lines(file).parallel().mapToLong(CharSequence::length).sum();
+                long mapped = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                String joined = lines(file).parallel().collect(Collectors.joining("\n"));
+                long joining = System.nanoTime() - start;
+
+                if (run == 2) {
+                    System.out.println("same results: " + (chars == mappedChars
+                        && joined.length() == chars + lines(file).count() - 1));
+                    System.out.printf("Files.lines().parallel(): %d msecs, mapped lines: %d msecs, "
+                        + "joined: %d msecs%n", filesLines / 1_000_000, mapped / 1_000_000, joining / 1_000_000);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
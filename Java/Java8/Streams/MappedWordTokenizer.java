@@ -0,0 +1,348 @@
+package Java.Java8.Streams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import Java.Java8.Collectors.HyperLogLog;
+
+/**
+ * Splits a file into words without creating a String per word.
+ *
+ * Files.lines() decodes every line into a String and line.split(" ") then
+ * allocates a String[] and a String per word, so counting the unique words of
+ * a large file is bound by allocation and garbage collection. Here instead:
+ *
+ * 1) the file is cut into ranges, one per task and at most MAX_RANGE bytes,
+ *    each range boundary moved forward to the next whitespace byte so no word
+ *    straddles two ranges
+ * 2) every range is memory-mapped and scanned in parallel, a word being a run
+ *    of bytes between ASCII whitespace (space, tab, CR, LF, FF, VT). The bytes
+ *    of a UTF-8 multibyte character are all >= 0x80, so they never split a word
+ * 3) each word is hashed straight from the mapped bytes, and handed to a
+ *    per-task state as (buffer, from, to, hash): a WordSet copies the bytes of
+ *    a word only the first time it sees it, a HyperLogLog only keeps the hash
+ * 4) the states of the tasks are merged at the end
+ *
+ * Unlike split(" "), consecutive whitespace doesn't produce empty words.
+ *
+ * long uniqueWords = MappedWordTokenizer.countDistinctWords(Paths.get("server.log"));
+ */
+public class MappedWordTokenizer {
+
+    /** Largest range mapped at once, a MappedByteBuffer is indexed by an int */
+    static final int MAX_RANGE = 1 << 28;
+
+    /**
+     * Receives the words of a range, with their 64-bit hash
+     */
+    @FunctionalInterface
+    public interface WordConsumer<S> {
+        /**
+         * @param state  the state of the task
+         * @param buffer the mapped range
+         * @param from   the index of the first byte of the word, inclusive
+         * @param to     the index of the last byte of the word, exclusive
+         * @param hash   the hash of the bytes of the word
+         */
+        void accept(S state, ByteBuffer buffer, int from, int to, long hash);
+    }
+
+    /**
+     * Open-addressing hash set of words stored as bytes: the first occurrence
+     * of a word is copied into a byte pool, the following ones are only
+     * compared to it.
+     *
+     * The pool is a single byte[] addressed by int offsets, so a WordSet holds
+     * at most MAX_POOL bytes of distinct words and 2^28 words: past that, add()
+     * throws an IllegalStateException, and estimateDistinctWords() counts the
+     * words of the file in constant memory instead
+     */
+    public static final class WordSet {
+        /** Largest pool, the largest byte[] the JVM allocates */
+        static final int MAX_POOL = Integer.MAX_VALUE - 8;
+        /** Largest table, two longs per slot */
+        private static final int MAX_TABLE = 1 << 30;
+
+        // two longs per slot, side by side in the same cache line: the hash,
+        // then (offset + 1 in pool) << 32 | length, 0 for an empty slot
+        private long[] table = new long[2 << 10];
+        private byte[] pool = new byte[1 << 12];
+        private int poolSize;
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Adds the word in bytes [from, to) of the buffer, unless present
+         * @throws IllegalStateException if the set can't hold one more word
+         */
+        public void add(ByteBuffer buffer, int from, int to, long hash) {
+            int length = to - from;
+            int mask = (table.length >>> 1) - 1;
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                long entry = table[2 * slot + 1];
+                if (entry == 0) {
+                    if (length > pool.length - poolSize) {
+                        if (length > MAX_POOL - poolSize) {
+                            throw full("more than " + MAX_POOL + " bytes of distinct words");
+                        }
+                        pool = Arrays.copyOf(pool, Math.max((int) Math.min((long) pool.length << 1, MAX_POOL),
+                            poolSize + length));
+                    }
+                    buffer.get(from, pool, poolSize, length);
+                    table[2 * slot] = hash;
+                    table[2 * slot + 1] = (long) (poolSize + 1) << 32 | length;
+                    poolSize += length;
+                    if (++size > mask >>> 1) { // at most half full
+                        grow();
+                    }
+                    return;
+                }
+                if (table[2 * slot] == hash && (int) entry == length
+                    && equalBytes(buffer, from, (int) (entry >>> 32) - 1, length)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean equalBytes(ByteBuffer buffer, int from, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(from + i) != pool[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private IllegalStateException full(String reason) {
+            return new IllegalStateException("WordSet full, " + reason
+                + ": count the words with MappedWordTokenizer.estimateDistinctWords()");
+        }
+
+        private void grow() {
+            if (table.length == MAX_TABLE) {
+                throw full("more than " + (MAX_TABLE >>> 2) + " distinct words");
+            }
+            long[] old = table;
+            table = new long[old.length << 1];
+            int mask = (table.length >>> 1) - 1;
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i + 1] != 0) {
+                    int slot = (int) old[i] & mask;
+                    while (table[2 * slot + 1] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[2 * slot] = old[i];
+                    table[2 * slot + 1] = old[i + 1];
+                }
+            }
+        }
+
+        /**
+         * Adds the words of another set into this one
+         * @return this set
+         */
+        public WordSet merge(WordSet other) {
+            ByteBuffer otherPool = ByteBuffer.wrap(other.pool);
+            for (int i = 0; i < other.table.length; i += 2) {
+                long entry = other.table[i + 1];
+                if (entry != 0) {
+                    int from = (int) (entry >>> 32) - 1;
+                    add(otherPool, from, from + (int) entry, other.table[i]);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Tokenizes a file in parallel, one state per range
+     * @param path        the file to read
+     * @param state       creates the state of a range
+     * @param consumer    receives every word of a range with its state
+     * @param merger      merges the states of two ranges
+     * @return the states of all the ranges merged, state.get() for an empty file
+     */
+    public static <S> S tokenize(Path path, Supplier<S> state, WordConsumer<S> consumer, BinaryOperator<S> merger) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = boundaries(channel);
+            return IntStream.range(0, boundaries.length - 1).parallel()
+                .mapToObj(i -> {
+                    S rangeState = state.get();
+                    scan(map(channel, boundaries[i], boundaries[i + 1]), rangeState, consumer);
+                    return rangeState;
+                })
+                .reduce(merger)
+                .orElseGet(state);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long from, long to) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the range boundaries, from 0 to the size of the file, each one
+     *         but the last at a whitespace byte
+     */
+    private static long[] boundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tasks = 4 * Runtime.getRuntime().availableProcessors();
+        long rangeSize = Math.max(1 << 16, Math.min(MAX_RANGE / 2, (size + tasks - 1) / tasks));
+        long[] boundaries = new long[(int) ((size + rangeSize - 1) / rangeSize) + 2];
+        int count = 1; // boundaries[0] = 0
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (long position = rangeSize; position < size; position += rangeSize) {
+            long boundary = nextWhitespace(channel, Math.max(position, boundaries[count - 1]), probe);
+            if (boundary >= size) {
+                break;
+            }
+            if (boundary - boundaries[count - 1] > MAX_RANGE) {
+                throw new IOException("Word longer than " + MAX_RANGE / 2 + " bytes at " + position);
+            }
+            if (boundary > boundaries[count - 1]) {
+                boundaries[count++] = boundary;
+            }
+        }
+        if (size - boundaries[count - 1] > MAX_RANGE) {
+            throw new IOException("Word longer than " + MAX_RANGE / 2 + " bytes at the end of the file");
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private static long nextWhitespace(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (isWhitespace(probe.get(i))) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r'); // \t \n VT \f \r
+    }
+
+    /**
+     * Hashes every word of the buffer with FNV-1a, mixed by the finalization
+     * step of MurmurHash3
+     */
+    private static <S> void scan(ByteBuffer buffer, S state, WordConsumer<S> consumer) {
+        int limit = buffer.limit();
+        int i = 0;
+        while (i < limit) {
+            while (i < limit && isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            int from = i;
+            long hash = 0xcbf29ce484222325L;
+            byte b;
+            while (i < limit && !isWhitespace(b = buffer.get(i))) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+                i++;
+            }
+            if (i > from) {
+                hash ^= hash >>> 33;
+                hash *= 0xff51afd7ed558ccdL;
+                hash ^= hash >>> 33;
+                hash *= 0xc4ceb9fe1a85ec53L;
+                hash ^= hash >>> 33;
+                consumer.accept(state, buffer, from, i, hash);
+            }
+        }
+    }
+
+    /**
+     * @return the exact number of distinct words of the file
+     * @throws IllegalStateException if the distinct words don't fit in a
+     *         WordSet, see estimateDistinctWords() for such files
+     */
+    public static long countDistinctWords(Path path) {
+        return tokenize(path, WordSet::new, WordSet::add, WordSet::merge).size();
+    }
+
+    /**
+     * @return the number of distinct words of the file estimated by a
+     *         HyperLogLog sketch of the given precision, in constant memory
+     */
+    public static long estimateDistinctWords(Path path, int precision) {
+        return tokenize(path, () -> new HyperLogLog(precision),
+            (sketch, buffer, from, to, hash) -> sketch.addHash(hash), HyperLogLog::merge).estimate();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("words", ".txt");
+        try {
+            Random random = new Random(42);
+            StringBuilder text = new StringBuilder();
+            for (int line = 0; line < 2_000_000; line++) {
+                for (int word = 0; word < 8; word++) {
+                    text.append("word").append(random.nextInt(1_000_000)).append(word < 7 ? ' ' : '\n');
+                }
+                if (text.length() > 1 << 20) {
+                    Files.writeString(file, text, StandardOpenOption.APPEND);
+                    text.setLength(0);
+                }
+            }
+            Files.writeString(file, text, StandardOpenOption.APPEND);
+            System.out.println("======== [Benchmark]: unique words of a " + (Files.size(file) >> 20)
+                + " MB file ========");
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                long split;
+                try (Stream<String> lines = Files.lines(file)) {
+                    split = lines.flatMap(line -> Arrays.stream(line.split(" "))).distinct().count();
+                }
+                long splitTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long mapped = countDistinctWords(file);
+                long mappedTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long estimated = estimateDistinctWords(file, HyperLogLog.DEFAULT_PRECISION);
+                long estimatedTime = System.nanoTime() - start;
+
+                if (run == 2) {
+                    System.out.printf("Files.lines() and split(): %d in %d msecs%n", split, splitTime / 1_000_000);
+                    System.out.printf("memory-mapped WordSet:     %d in %d msecs%n", mapped, mappedTime / 1_000_000);
+                    System.out.printf("memory-mapped HyperLogLog: %d in %d msecs%n", estimated,
+                        estimatedTime / 1_000_000);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        System.out.println(countDistinctWords(Paths.get("Java", "Java8", "Streams", "Ozymandias.txt"))
+            + " unique words in Ozymandias.txt");
+    }
+}
@@ -1,6 +1,10 @@
 package Java.Java8.Streams;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -40,8 +44,219 @@ import java.util.stream.Stream;
  * 5. Generate a stream of b values
  * 6. Generate a stream of a values
  * 7. Limit the output
+ * 
+ * This tries every (a,b) pair, O(n^2) square roots and an array per pair.
+ * 
+ * ==========   Euclid's formula ==========
+ * For any m > n > 0, (m^2 - n^2, 2mn, m^2 + n^2) is a Pythagorean triple, and
+ * it's primitive when m - n is odd and gcd(m,n) = 1. Every primitive triple
+ * is generated exactly once that way, and every triple is k times a primitive
+ * one, so forEachTriple():
+ * 1. Enumerates the pairs (m,n) with m^2 + n^2 <= maxC, n of the other parity
+ * than m, skipping the ones with a common divisor
+ * 2. Passes each primitive triple and its multiples k <= maxC / c to a
+ * TripleConsumer, as ints: no array, no boxing, no square root
+ * 3. In parallel, splits the range of m into fork-join tasks, each one with
+ * a sink of its own, combined at the end
+ * m is at most sqrt(maxC) and most pairs (m,n) tried give at least one
+ * triple, so the work is proportional to the triples found: the 23 million
+ * triples with c <= 10^7 take a fraction of a second.
  */
 public class PythagoreanTriples {
+
+    /**
+     * Receives the triples, a <= b < c
+     */
+    @FunctionalInterface
+    public interface TripleConsumer {
+        void accept(int a, int b, int c);
+    }
+
+    /**
+     * Counts the triples, and sums their hypotenuses as a checksum
+     */
+    public static class TripleCount implements TripleConsumer {
+        private long count;
+        private long sumOfC;
+
+        @Override
+        public void accept(int a, int b, int c) {
+            count++;
+            sumOfC += c;
+        }
+
+        public TripleCount combine(TripleCount other) {
+            count += other.count;
+            sumOfC += other.sumOfC;
+            return this;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumOfC() {
+            return sumOfC;
+        }
+    }
+
+    /**
+     * Keeps the triples in three int arrays, reusable once cleared
+     */
+    public static class TripleBuffer implements TripleConsumer {
+        private int[] a = new int[64];
+        private int[] b = new int[64];
+        private int[] c = new int[64];
+        private int size;
+
+        @Override
+        public void accept(int a, int b, int c) {
+            if (size == this.a.length) {
+                this.a = Arrays.copyOf(this.a, size << 1);
+                this.b = Arrays.copyOf(this.b, size << 1);
+                this.c = Arrays.copyOf(this.c, size << 1);
+            }
+            this.a[size] = a;
+            this.b[size] = b;
+            this.c[size++] = c;
+        }
+
+        public TripleBuffer addAll(TripleBuffer other) {
+            for (int i = 0; i < other.size; i++) {
+                accept(other.a[i], other.b[i], other.c[i]);
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getA(int i) {
+            return a[i];
+        }
+
+        public int getB(int i) {
+            return b[i];
+        }
+
+        public int getC(int i) {
+            return c[i];
+        }
+
+        public void clear() {
+            size = 0;
+        }
+    }
+
+    /** Smallest range of m left to a single fork-join task */
+    private static final int MIN_M_RANGE = 16;
+
+    private static int gcd(int x, int y) {
+        while (y != 0) {
+            int r = x % y;
+            x = y;
+            y = r;
+        }
+        return x;
+    }
+
+    /**
+     * @return the largest m with a triple of hypotenuse at most maxC
+     */
+    private static int maxM(int maxC) {
+        return (int) Math.sqrt(maxC);
+    }
+
+    /**
+     * Passes the primitive triples of Euclid's formula for each m in [fromM,
+     * toM), with c <= maxC, and their multiples too if withMultiples
+     */
+    private static void forEachTriple(int fromM, int toM, int maxC, boolean withMultiples, TripleConsumer sink) {
+        for (int m = Math.max(2, fromM); m < toM; m++) {
+            long mm = (long) m * m;
+            for (int n = (m & 1) == 0 ? 1 : 2; n < m && mm + (long) n * n <= maxC; n += 2) {
+                if (gcd(m, n) != 1) {
+                    continue;
+                }
+                int a = (int) (mm - n * n);
+                int b = 2 * m * n;
+                int c = (int) (mm + n * n);
+                if (a > b) {
+                    int t = a;
+                    a = b;
+                    b = t;
+                }
+                if (!withMultiples) {
+                    sink.accept(a, b, c);
+                    continue;
+                }
+                for (int k = 1, ka = a, kb = b, kc = c; kc <= maxC && kc > 0; k++, ka += a, kb += b, kc += c) {
+                    sink.accept(ka, kb, kc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes every primitive triple with c <= maxC to the sink, in no
+     * particular order
+     */
+    public static void forEachPrimitiveTriple(int maxC, TripleConsumer sink) {
+        forEachTriple(2, maxM(maxC) + 1, maxC, false, sink);
+    }
+
+    /**
+     * Passes every triple with c <= maxC to the sink, each primitive triple
+     * followed by its multiples
+     */
+    public static void forEachTriple(int maxC, TripleConsumer sink) {
+        forEachTriple(2, maxM(maxC) + 1, maxC, true, sink);
+    }
+
+    /**
+     * Passes every triple with c <= maxC to sinks in parallel, splitting the
+     * range of m into tasks of the common fork-join pool
+     * @param sinks    creates the sink of a task
+     * @param combiner merges the sinks of two tasks
+     * @return the sinks of all the tasks merged
+     */
+    public static <S extends TripleConsumer> S forEachTripleInParallel(int maxC, Supplier<S> sinks,
+                                                                       BinaryOperator<S> combiner) {
+        return ForkJoinPool.commonPool().invoke(new TripleTask<>(2, maxM(maxC) + 1, maxC, sinks, combiner));
+    }
+
+    private static final class TripleTask<S extends TripleConsumer> extends RecursiveTask<S> {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromM;
+        private final int toM;
+        private final int maxC;
+        private final Supplier<S> sinks;
+        private final BinaryOperator<S> combiner;
+
+        TripleTask(int fromM, int toM, int maxC, Supplier<S> sinks, BinaryOperator<S> combiner) {
+            this.fromM = fromM;
+            this.toM = toM;
+            this.maxC = maxC;
+            this.sinks = sinks;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected S compute() {
+            if (toM - fromM <= MIN_M_RANGE) {
+                S sink = sinks.get();
+                forEachTriple(fromM, toM, maxC, true, sink);
+                return sink;
+            }
+            int middle = (fromM + toM) >>> 1;
+            TripleTask<S> left = new TripleTask<>(fromM, middle, maxC, sinks, combiner);
+            left.fork();
+            S right = new TripleTask<>(middle, toM, maxC, sinks, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
     
     public static void main(String[] args){
         // Build a Stream of int[] that represent Pythagorean Triples
@@ -97,5 +312,40 @@ public class PythagoreanTriples {
                 .map(array -> Arrays.stream(array).mapToInt(a -> (int) a).toArray());
     pythagoreanTriples2.forEach(t -> System.out.println(t[0] + ", " + t[1] + ", " + t[2]));
 
+        System.out.println("\n======== Pythagorean Triples from Euclid's formula ========");
+        TripleBuffer buffer = new TripleBuffer();
+        forEachPrimitiveTriple(100, buffer);
+        for (int i = 0; i < buffer.size(); i++) {
+            System.out.println(buffer.getA(i) + ", " + buffer.getB(i) + ", " + buffer.getC(i));
+        }
+        buffer.clear();
+        forEachTriple(100, buffer);
+        long pairs = IntStream.rangeClosed(1, 100).boxed()
+            .flatMap(a -> IntStream.rangeClosed(a, 100)
+                .filter(b -> Math.sqrt(a * a + b * b) % 1 == 0 && Math.sqrt(a * a + b * b) <= 100)
+                .boxed())
+            .count();
+        System.out.println(buffer.size() + " triples with c <= 100, " + pairs + " found by the stream of (a,b) pairs");
+
+        int maxC = 10_000_000;
+        System.out.println("\n======== [Benchmark]: every triple with c <= " + maxC + " ========");
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            TripleCount sequential = new TripleCount();
+            forEachTriple(maxC, sequential);
+            long sequentialTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TripleCount parallel = forEachTripleInParallel(maxC, TripleCount::new, TripleCount::combine);
+            long parallelTime = System.nanoTime() - start;
+
+            if (run == 2) {
+                System.out.println(sequential.getCount() + " triples, same results: "
+                    + (sequential.getCount() == parallel.getCount() && sequential.getSumOfC() == parallel.getSumOfC()));
+                System.out.printf("sequential: %d msecs, fork-join: %d msecs%n",
+                    sequentialTime / 1_000_000, parallelTime / 1_000_000);
+            }
+        }
+
     } // end of Main
 } // end of Class
@@ -1,5 +1,7 @@
 package Java.Math;
 
+import java.math.BigInteger;
+
 /**
  * A Mersenne number is of the form Mn = 2^n - 1, where n is an integer.
  * - The first few Mersenne numbers are 1, 3, 7, 15, 31, 63, 127, 255
@@ -108,6 +110,49 @@ public class Mersenne {
         return x;
     }
 
+    /**
+     * Reduces a non negative k modulo Mp = 2^p - 1 without any division.
+     * Since 2^p = 1 (mod Mp), splitting k into its low p bits and the bits
+     * above gives k = (k >> p) * 2^p + (k & Mp) = (k >> p) + (k & Mp) (mod Mp),
+     * so a shift and an add fold k until it has at most p bits.
+     * @param k the number to reduce, k >= 0
+     * @param p the exponent of the Mersenne number
+     * @param mp the Mersenne number 2^p - 1
+     * @return k mod Mp
+     */
+    static BigInteger modMersenne(BigInteger k, int p, BigInteger mp) {
+        while (k.bitLength() > p) {
+            k = k.and(mp).add(k.shiftRight(p));
+        }
+        return k.equals(mp) ? BigInteger.ZERO : k;
+    }
+
+    /**
+     * Lucas-Lehmer Test, for an odd prime p the Mersenne number Mp = 2^p - 1
+     * is prime iff s(p-2) = 0 (mod Mp), where s(0) = 4 and s(i) = s(i-1)^2 - 2.
+     * 
+     * Each of the p - 2 steps squares a p-bit number with BigInteger and 
+     * reduces it with modMersenne(), shift and add instead of a division.
+     * @param p the exponent, should be prime (otherwise Mp is never prime)
+     * @return true if 2^p - 1 is prime, false otherwise
+     */
+    public static boolean lucasLehmer(int p) {
+        if (p == 2) {
+            return true; // M2 = 3, the test only holds for odd primes
+        }
+        if (p < 2) {
+            return false;
+        }
+        BigInteger mp = BigInteger.ONE.shiftLeft(p).subtract(BigInteger.ONE);
+        BigInteger s = BigInteger.valueOf(4);
+        BigInteger two = BigInteger.TWO;
+        for (int i = 0; i < p - 2; i++) {
+            s = modMersenne(s.multiply(s), p, mp);
+            s = s.compareTo(two) >= 0 ? s.subtract(two) : s.add(mp).subtract(two);
+        }
+        return s.signum() == 0;
+    }
+
     public static void main(String[] args){
 
     }
@@ -0,0 +1,196 @@
+package Java.Math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches a range of exponents for Mersenne primes Mp = 2^p - 1.
+ *
+ * Only a prime p can give a Mersenne prime (see Mersenne), so the pipeline is:
+ * 1) Keep only the prime exponents of the range, with Prime.isPrime(long)
+ * 2) Fan them out over a ForkJoinPool, splitting the exponents in half until
+ *    a task holds a single one. The cost of Mersenne.lucasLehmer(p) grows
+ *    roughly as p^2 log p, so tasks are very uneven and idle workers steal
+ *    the pending halves of busy ones (work stealing).
+ * 3) Record every Mersenne prime found, and the Progress of the search.
+ *
+ * Progress can be read from any thread while the search runs: exponents
+ * tested, Lucas-Lehmer iterations done, Mersenne primes found, elapsed time
+ * and throughput in exponents and iterations per second.
+ */
+public class MersenneSearch {
+
+    /**
+     * Progress metrics of a search, updated concurrently by the workers
+     */
+    public static class Progress {
+        private final long start = System.nanoTime();
+        private final int total;
+        private final LongAdder tested = new LongAdder();
+        private final LongAdder iterations = new LongAdder();
+        private final LongAdder found = new LongAdder();
+
+        Progress(int total) {
+            this.total = total;
+        }
+
+        /** @return the number of prime exponents to test */
+        public int total() {
+            return total;
+        }
+
+        /** @return the number of exponents tested so far */
+        public long tested() {
+            return tested.sum();
+        }
+
+        /** @return the number of Lucas-Lehmer squarings done so far */
+        public long iterations() {
+            return iterations.sum();
+        }
+
+        /** @return the number of Mersenne primes found so far */
+        public long found() {
+            return found.sum();
+        }
+
+        /** @return the seconds since the search started */
+        public double elapsedSeconds() {
+            return (System.nanoTime() - start) / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedSeconds();
+            return String.format("%d/%d exponents, %d found, %.1f s, %.1f exponents/s, %.0f iterations/s",
+                tested(), total, found(), seconds, tested() / seconds, iterations() / seconds);
+        }
+    }
+
+    /**
+     * Fork-join task testing a slice of the prime exponents
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] exponents;
+        private final int from;
+        private final int to;
+        private final Progress progress;
+        private final ConcurrentLinkedQueue<Integer> results;
+
+        SearchTask(int[] exponents, int from, int to, Progress progress,
+                   ConcurrentLinkedQueue<Integer> results) {
+            this.exponents = exponents;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int p = exponents[from];
+                if (Mersenne.lucasLehmer(p)) {
+                    results.add(p);
+                    progress.found.increment();
+                }
+                progress.iterations.add(Math.max(0, p - 2));
+                progress.tested.increment();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SearchTask(exponents, from, mid, progress, results),
+                      new SearchTask(exponents, mid, to, progress, results));
+        }
+    }
+
+    private final int[] exponents;
+    private final Progress progress;
+    private final ConcurrentLinkedQueue<Integer> results = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Prepares a search over the exponents within [from, to]
+     * @param from first exponent, inclusive
+     * @param to   last exponent, inclusive
+     */
+    public MersenneSearch(int from, int to) {
+        Prime prime = new Prime();
+        List<Integer> primes = new ArrayList<>();
+        for (int p = Math.max(from, 2); p <= to && p > 0; p++) {
+            if (prime.isPrime((long) p)) {
+                primes.add(p);
+            }
+        }
+        this.exponents = primes.stream().mapToInt(Integer::intValue).toArray();
+        this.progress = new Progress(exponents.length);
+    }
+
+    /**
+     * @return the progress of the search, safe to read while it runs
+     */
+    public Progress progress() {
+        return progress;
+    }
+
+    /**
+     * Starts the search on a pool without waiting for it
+     * @param pool the pool the exponents are fanned out on
+     * @return the task, to join or poll, already done if the range holds no
+     *         prime exponent
+     */
+    public ForkJoinTask<Void> start(ForkJoinPool pool) {
+        if (exponents.length == 0) {
+            ForkJoinTask<Void> done = ForkJoinTask.adapt(() -> { }, null);
+            done.complete(null); // never forked, so join() mustn't wait for it
+            return done;
+        }
+        return pool.submit(new SearchTask(exponents, 0, exponents.length, progress, results));
+    }
+
+    /**
+     * @return the exponents of the Mersenne primes found so far, ascending
+     */
+    public List<Integer> found() {
+        List<Integer> found = new ArrayList<>(results);
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * Runs the search on the common pool and waits for it
+     * @param from first exponent, inclusive
+     * @param to   last exponent, inclusive
+     * @return the exponents p of the Mersenne primes 2^p - 1 in the range
+     */
+    public static List<Integer> search(int from, int to) {
+        MersenneSearch search = new MersenneSearch(from, to);
+        search.start(ForkJoinPool.commonPool()).join();
+        return search.found();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int from = 2, to = 5_000;
+        System.out.println("======== Mersenne prime search, exponents " + from + " to " + to + " ========");
+        MersenneSearch search = new MersenneSearch(from, to);
+        ForkJoinTask<Void> task = search.start(ForkJoinPool.commonPool());
+        while (!task.isDone()) {
+            Thread.sleep(1_000);
+            System.out.println("[Progress] " + search.progress());
+        }
+        task.join();
+        System.out.println("\n[Exponents of Mersenne primes]\n " + search.found());
+        System.out.println("\n[Throughput]\n " + search.progress());
+
+        // no prime exponent in [24, 28]: the search returns at once
+        ForkJoinTask<Void> empty = new MersenneSearch(24, 28).start(ForkJoinPool.commonPool());
+        System.out.println("\n[Empty range 24 to 28]\n done: " + empty.isDone() + ", found: " + search(24, 28));
+    }
+}
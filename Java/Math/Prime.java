@@ -2,6 +2,8 @@ package Java.Math;
 
 import java.util.stream.IntStream;
 
+import Java.Java8.Collectors.PrimeTable;
+
 /** 
  * Prime numbers are evenly divisible only by itself and one (e.g., 2, 3, 5, 7, 11).
  * A prime number is a natural number greater than 1 that is not a product of two
@@ -52,6 +54,11 @@ import java.util.stream.IntStream;
  *  we have a^{n-1} =/= 1 mod{n}a , then n is definitely composite.
  * 
  * 4) Miller-Rabin Primality Test (favorite)
+ *  Write n - 1 = d * 2^s with d odd. If n is prime, then for every witness a
+ * either a^d = 1 (mod n) or a^(d * 2^r) = -1 (mod n) for some 0 <= r < s. 
+ * A witness for which neither holds proves n composite. Random witnesses make
+ * it probabilistic, but for n < 2^64 testing the first 12 primes as witnesses
+ * (2 through 37) is enough to make it deterministic.
  * 
  * 5) AKS Primality Test? 
  */
@@ -84,6 +91,143 @@ public class Prime {
                         .noneMatch(i -> candidate % i == 0);
     }
 
+    /**
+     * Given a candidate number, checks whether it is prime or not by looking
+     * it up in the PrimeTable shared by the process. The table is only 
+     * extended when the candidate is beyond the numbers sieved so far, so
+     * repeated checks don't recompute anything.
+     * 
+     * @param candidate number to check Primality
+     * @return true if number is prime, false otherwise
+     */
+    public boolean isPrimeCached(int candidate) {
+        return PrimeTable.shared().isPrime(candidate);
+    }
+
+    // The Following methods are the Miller-Rabin Primality Test for long
+
+    /** Primes used to trial divide a candidate before running Miller-Rabin */
+    private static final int[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43,
+        47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97};
+
+    /** Smallest composite number with no factor in SMALL_PRIMES, 101^2 */
+    private static final long SMALL_PRIMES_BOUND = 101 * 101;
+
+    /** Witnesses that make Miller-Rabin deterministic for every n < 2^64 */
+    private static final int[] WITNESSES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    /**
+     * Montgomery reduction: given the 128-bit product hi:lo of two numbers in
+     * Montgomery form, returns hi:lo / 2^64 mod n, without any division.
+     * @param hi   high 64 bits of the product
+     * @param lo   low 64 bits of the product
+     * @param n    the odd modulus, less than 2^63
+     * @param nInv -n^(-1) mod 2^64
+     * @return the reduced product, in [0, n)
+     */
+    private static long redc(long hi, long lo, long n, long nInv) {
+        long m = lo * nInv;
+        // unsigned high 64 bits of m * n, n is never negative
+        long mnHigh = Math.multiplyHigh(m, n) + ((m >> 63) & n);
+        long t = hi + mnHigh + (lo != 0 ? 1 : 0); // lo + low(m * n) is 0 mod 2^64
+        return Long.compareUnsigned(t, n) >= 0 ? t - n : t;
+    }
+
+    /**
+     * Multiplies two numbers in Montgomery form. Both are less than n < 2^63,
+     * so Math.multiplyHigh gives the unsigned high bits of their product.
+     */
+    private static long mulMont(long a, long b, long n, long nInv) {
+        return redc(Math.multiplyHigh(a, b), a * b, n, nInv);
+    }
+
+    /**
+     * Given a candidate number, checks whether it is prime or not, for the 
+     * whole range of long. Trial divides by SMALL_PRIMES first, which settles
+     * most candidates, then runs a deterministic Miller-Rabin test with the 
+     * WITNESSES. Modular multiplications use Montgomery form on top of
+     * Math.multiplyHigh, so no BigInteger nor division is needed, and nothing
+     * is allocated.
+     * 
+     * @param candidate number to check Primality
+     * @return true if number is prime, false otherwise
+     */
+    public boolean isPrime(long candidate) {
+        if (candidate < 2) {
+            return false;
+        }
+        for (int p : SMALL_PRIMES) {
+            if (candidate % p == 0) {
+                return candidate == p;
+            }
+        }
+        if (candidate < SMALL_PRIMES_BOUND) {
+            return true;
+        }
+
+        long n = candidate;
+        // -n^(-1) mod 2^64 by Newton's iteration, each step doubles the correct bits
+        long inv = n;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - n * inv;
+        }
+        long nInv = -inv;
+        // R = 2^64 mod n is Montgomery's 1, and R^2 mod n converts into Montgomery form
+        long one = Long.remainderUnsigned(-n, n);
+        long minusOne = n - one;
+        long r2 = one;
+        for (int i = 0; i < 64; i++) { // doubling, n < 2^63 so r2 << 1 fits unsigned
+            r2 <<= 1;
+            if (Long.compareUnsigned(r2, n) >= 0) {
+                r2 -= n;
+            }
+        }
+
+        // n - 1 = d * 2^s
+        int s = Long.numberOfTrailingZeros(n - 1);
+        long d = (n - 1) >>> s;
+
+        nextWitness:
+        for (int a : WITNESSES) {
+            // x = a^d mod n, by square and multiply in Montgomery form
+            long base = mulMont(a, r2, n, nInv);
+            long x = one;
+            for (long e = d; e != 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    x = mulMont(x, base, n, nInv);
+                }
+                base = mulMont(base, base, n, nInv);
+            }
+            if (x == one || x == minusOne) {
+                continue;
+            }
+            for (int r = 1; r < s; r++) {
+                x = mulMont(x, x, n, nInv);
+                if (x == minusOne) {
+                    continue nextWitness;
+                }
+            }
+            return false; // a is a witness that n is composite
+        }
+        return true;
+    }
+
+    /**
+     * Checks the primality of a batch of candidates in parallel, splitting the
+     * indices of the array across the common ForkJoinPool.
+     * 
+     * @param candidates numbers to check Primality
+     * @param results    where results[i] is set to whether candidates[i] is prime
+     */
+    public void isPrime(long[] candidates, boolean[] results) {
+        if (results.length < candidates.length) {
+            throw new IllegalArgumentException("results is shorter than candidates");
+        }
+        IntStream.range(0, candidates.length)
+                 .parallel()
+                 .forEach(i -> results[i] = isPrime(candidates[i]));
+    }
+
     public static void main(String[] args){
 
     }
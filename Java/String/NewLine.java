@@ -1,9 +1,13 @@
 package Java.String;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumSet;
+import java.util.stream.Collectors;
+
+import Java.Java8.Streams.MappedLineSpliterator;
 
 /**
  * This class explores line breaks & newlines of Strings. 
@@ -38,6 +42,7 @@ import java.util.EnumSet;
  * (1) Reading File as a String
  * (2) Replacing Newlines from a String
  * (3) Explore Carriage Return and Line Feed (CRLF)
+ * (4) Reading a large File as a String, in parallel
  */
 public class NewLine {
 
@@ -65,6 +70,26 @@ public class NewLine {
         return "";  
     }
 
+    /**
+     * Reads a file as a String of its lines joined by the platform line
+     * separator, whatever the line terminators of the file, "\n" or "\r\n".
+     * The lines are read in parallel from the memory-mapped file, which
+     * pays off on large files
+     * @param filename - name of a UTF-8 file
+     * @return contents of the file with System.lineSeparator() between lines
+     */
+    public static String readFileAsStringInParallel(String filename) {
+        try {
+            return MappedLineSpliterator.lines(Path.of(filename))
+                                        .parallel()
+                                        .collect(Collectors.joining(System.lineSeparator()));
+        } catch (UncheckedIOException ex) {
+            ex.printStackTrace();
+        }
+
+        return "";
+    }
+
     // Java 8 way using Streams to read file as String
     // public static String streamFileAsString(String filename) throws IOException {
     //     try (Stream<String> stream = Files.lines(Paths.get("input.txt"))){